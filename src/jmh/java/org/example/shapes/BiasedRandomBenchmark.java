@@ -0,0 +1,39 @@
+package org.example.shapes;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость одного вызова {@code biasedRandom} — выбора координаты с учетом плотности.
+ * Для сравнения измеряется и сам генератор случайных чисел.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BiasedRandomBenchmark {
+
+    @Param({"0", "0.5", "1"})
+    public double density;
+
+    private SplittableRandom random;
+
+    @Setup
+    public void setUp() {
+        random = new SplittableRandom(42L);
+    }
+
+    @Benchmark
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    @Benchmark
+    public double biasedRandom() {
+        return UniformDistribution.biasedRandom(0, 800, density, random);
+    }
+}
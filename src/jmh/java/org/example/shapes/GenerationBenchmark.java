@@ -0,0 +1,65 @@
+package org.example.shapes;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность генерации сцен по типам фигур.
+ * <p>
+ * Каждый вызов строит сцену из {@code sceneSize} фигур одного типа вместе
+ * с пространственным индексом — ту же работу, что выполняет
+ * {@link RandomShapeGenerator#generate(InputParameters, DrawPanel)} до передачи сцены панели.
+ * Счетчик {@code shapes} выдает результат в фигурах в секунду; выделение памяти
+ * на фигуру — это {@code gc.alloc.rate.norm}, деленный на {@code sceneSize}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djava.awt.headless=true"})
+public class GenerationBenchmark {
+
+    @Param({"LINE", "CIRCLE", "RECTANGLE", "TRIANGLE", "PARABOLA", "TRAPEZOID"})
+    public ShapeKind kind;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int sceneSize;
+
+    /** Генерация в общем пуле потоков или в вызывающем потоке. */
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private RandomShapeGenerator generator;
+    private InputParameters params;
+
+    /**
+     * Счетчик сгенерированных фигур.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Shapes {
+        public long shapes;
+    }
+
+    @Setup
+    public void setUp() {
+        generator = new RandomShapeGenerator();
+        if (parallel) {
+            generator.setPool(ForkJoinPool.commonPool());
+        }
+        int[] counts = new int[ShapeKind.values().length];
+        counts[kind.ordinal()] = sceneSize;
+        params = new InputParameters(counts[0], counts[1], counts[2], counts[3], counts[4], counts[5],
+                0, 800, 0, 600, 0.3, 25, 42L);
+    }
+
+    @Benchmark
+    public ShapeStore generateScene(Shapes counter) {
+        ShapeStore scene = generator.generateScene(params);
+        counter.shapes += sceneSize;
+        return scene;
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.shapes;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отрисовка панели {@link DrawPanel} во внеэкранное изображение со сглаживанием и без.
+ * <p>
+ * {@code fullRepaint} измеряет полную перерисовку буфера панели (сетка и все фигуры;
+ * большие сцены рисуются по плиткам, как в приложении): панель не ждет плиток,
+ * поэтому тест отрисовывает ее, пока все плитки не будут готовы. {@code cachedRepaint} —
+ * копирование уже готового буфера. Сцена содержит поровну фигур каждого типа.
+ * Параметр {@code colorBatching} сравнивает строгий порядок фигур с отрисовкой
+ * группами по цветам палитры (см. {@link ShapePainter#VALUE_ORDER_BY_COLOR}).
+ * Группировка в целом не быстрее: {@code fullRepaint}, строгий порядок / группы, мс
+ * (один процессор, без экрана):
+ * <pre>
+ *                      100 000       1 000 000
+ *   со сглаживанием    8444 / 7225   69 660 / 81 080
+ *   без сглаживания     682 / 917     6383 / 8791
+ * </pre>
+ * Группы выигрывают 15 % только со сглаживанием на 100 000 фигур, в остальных
+ * случаях проигрывают 16–38 %.
+ * <p>
+ * Бюджет кадра 16 мс на миллионе фигур выдерживает только {@code cachedRepaint}
+ * (копирование готовых плиток, единицы миллисекунд). Полная перерисовка миллиона
+ * фигур занимает 6,4 с без сглаживания и 70 с со сглаживанием; панель не ждет ее
+ * в потоке обработки событий, а показывает плитки по мере готовности.
+ * <p>
+ * Плитки панели — изображения в памяти, их всегда рисует программный конвейер Java2D;
+ * конвейеры OpenGL ({@code -Dsun.java2d.opengl=true}) и XRender
+ * ({@code -Dsun.java2d.xrender=true}) ускоряют только вывод готовых плиток на экран
+ * и в этом тесте, работающем без экрана, не участвуют.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djava.awt.headless=true"})
+public class PaintBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int sceneSize;
+
+    @Param({"true", "false"})
+    public boolean antialiasing;
+
+    @Param({"false", "true"})
+    public boolean colorBatching;
+
+    private DrawPanel panel;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setUp() {
+        int perKind = sceneSize / ShapeKind.values().length;
+        InputParameters params = new InputParameters(perKind, perKind, perKind, perKind, perKind,
+                sceneSize - 5 * perKind, 0, 800, 0, 600, 0.3, 25, 42L);
+
+        panel = new DrawPanel();
+        panel.setSize(panel.getPreferredSize());
+        panel.setParameters(params.getMinX(), params.getMaxX(),
+                params.getMinY(), params.getMaxY(), params.getGridStep());
+        panel.setScene(new RandomShapeGenerator().generateScene(params));
+        panel.setAntialiasing(antialiasing);
+        panel.setColorBatching(colorBatching);
+        // сглаживание задается параметром, а не плотностью сцены
+        panel.setAntialiasingThreshold(Double.POSITIVE_INFINITY);
+
+        image = new BufferedImage(panel.getWidth(), panel.getHeight(), BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+        paintFully();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage fullRepaint() {
+        // новая эпоха содержимого заставляет панель перерисовать буфер целиком
+        panel.setAntialiasing(antialiasing);
+        paintFully();
+        return image;
+    }
+
+    /**
+     * Отрисовывает панель, пока она не покажет все плитки готовыми: плитки рисуются
+     * в общем пуле потоков, поэтому между отрисовками ждем, пока пул не опустеет.
+     */
+    private void paintFully() {
+        panel.paintComponent(graphics);
+        while (!panel.isPaintComplete()) {
+            ForkJoinPool.commonPool().awaitQuiescence(1, TimeUnit.MINUTES);
+            panel.paintComponent(graphics);
+        }
+    }
+
+    @Benchmark
+    public BufferedImage cachedRepaint() {
+        panel.paintComponent(graphics);
+        return image;
+    }
+}
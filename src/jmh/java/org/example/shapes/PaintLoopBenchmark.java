@@ -0,0 +1,80 @@
+package org.example.shapes;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цикл отрисовки фигур одного типа через {@link ShapePainter}.
+ * <p>
+ * Результат нормирован на одну фигуру, поэтому {@code gc.alloc.rate.norm} профилировщика
+ * GC показывает количество байт, выделяемых на отрисовку одной фигуры. Сам цикл
+ * выделяет память только при промахе кэша цветов; остальное выделяет конвейер Java2D
+ * (например, итераторы контура окружностей и растеризатор сглаживания).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PaintLoopBenchmark {
+
+    /** Количество фигур в сцене. */
+    private static final int SHAPES = 10_000;
+
+    @Param({"LINE", "CIRCLE", "RECTANGLE", "TRIANGLE", "PARABOLA", "TRAPEZOID"})
+    public ShapeKind kind;
+
+    @Param({"false", "true"})
+    public boolean antialiasing;
+
+    /** Все фигуры одного цвета: показывает цикл без промахов кэша цветов. */
+    @Param({"false", "true"})
+    public boolean singleColor;
+
+    private ShapeBuffer buffer;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setUp() {
+        int[] counts = new int[ShapeKind.values().length];
+        counts[kind.ordinal()] = SHAPES;
+        ShapeStore scene = new RandomShapeGenerator().generateScene(new InputParameters(
+                counts[0], counts[1], counts[2], counts[3], counts[4], counts[5],
+                0, 800, 0, 600, 0.3, 25, 42L));
+        buffer = scene.buffer(kind, 0);
+        if (singleColor) {
+            for (int i = 0; i < buffer.size(); i++) {
+                buffer.setColor(i, 0xFF336699);
+            }
+        }
+
+        image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+        graphics.clipRect(0, 0, 800, 600);
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing
+                ? RenderingHints.VALUE_ANTIALIAS_ON
+                : RenderingHints.VALUE_ANTIALIAS_OFF);
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SHAPES)
+    public BufferedImage paintLoop() {
+        ShapePainter painter = new ShapePainter(graphics);
+        for (int i = 0, n = buffer.size(); i < n; i++) {
+            painter.draw(buffer, i);
+        }
+        painter.finish();
+        return image;
+    }
+}
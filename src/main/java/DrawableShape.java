@@ -1,8 +0,0 @@
-import java.awt.Graphics2D;
-
-/**
- * Интерфейс для всех рисуемых фигур на панели.
- */
-public interface DrawableShape {
-    void draw(Graphics2D g2);
-}
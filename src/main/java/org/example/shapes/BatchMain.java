@@ -0,0 +1,315 @@
+package org.example.shapes;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Пакетная генерация рисунков без графического интерфейса.
+ * <p>
+ * Создает заданное количество сцен и сохраняет каждую в PNG-файл. Генерация,
+ * растеризация и кодирование PNG выполняются в отдельных потоках и связаны
+ * ограниченными очередями, поэтому этапы работают одновременно, а в памяти
+ * находится лишь несколько сцен и изображений.
+ * <p>
+ * Параметры задаются аргументами вида {@code --ключ=значение}:
+ * <pre>
+ *   --params=файл.properties  файл с параметрами (те же ключи без "--")
+ *   --lines, --circles, --rectangles, --triangles, --parabolas, --trapezoids
+ *   --minX, --maxX, --minY, --maxY, --density, --gridStep
+ *   --seed=N      зерно первой сцены; сцена k получает зерно N + k
+ *   --distribution=имя  распределение положений: uniform (по умолчанию), gaussian,
+ *                 poisson, clustered или mask:файл.png
+ *   --count=N     количество сцен (по умолчанию 1)
+ *   --out=каталог каталог для PNG-файлов (по умолчанию "out")
+ *   --encoders=N  количество потоков кодирования PNG (по умолчанию 2)
+ *   --colorBatching=true  рисовать фигуры группами по цветам палитры
+ *                 (в SVG меньше элементов; растеризацию обычно не ускоряет, цвета огрубляются
+ *                 и порядок наложения не сохраняется, см. {@link ShapePainter})
+ *   --stream=true рисовать фигуры блоками по мере генерации, не храня сцену целиком:
+ *                 память не зависит от количества фигур (см. {@link StreamRenderer})
+ *   --format=png|svg|svgz  формат файлов (по умолчанию png); векторные форматы
+ *                 пишутся потоково без растеризации (см. {@link SvgExporter})
+ * </pre>
+ * Аргументы командной строки имеют приоритет над файлом параметров.
+ * <p>
+ * Короткие запуски в основном тратят время на загрузку классов; архив AppCDS,
+ * записанный задачей {@code cdsArchive} в build.gradle, сокращает время
+ * до первого рисунка (см. задачу {@code startupBenchmark}).
+ */
+public class BatchMain {
+
+    /** Логгер пакетного режима. */
+    private static final Logger LOGGER = LogManager.getLogger(BatchMain.class);
+
+    /** Емкость очередей между этапами конвейера. */
+    private static final int QUEUE_CAPACITY = 4;
+
+    /**
+     * Точка входа пакетного режима.
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        int count;
+        int encoders;
+        boolean colorBatching;
+        boolean stream;
+        String format;
+        File outDir;
+        InputParameters template;
+        try {
+            Properties props = parseArgs(args);
+            count = Integer.parseInt(props.getProperty("count", "1"));
+            encoders = Math.max(1, Integer.parseInt(props.getProperty("encoders", "2")));
+            colorBatching = Boolean.parseBoolean(props.getProperty("colorBatching", "false"));
+            stream = Boolean.parseBoolean(props.getProperty("stream", "false"));
+            format = props.getProperty("format", "png");
+            if (!format.equals("png") && !format.equals("svg") && !format.equals("svgz")) {
+                throw new IllegalArgumentException("Unknown format: " + format);
+            }
+            outDir = new File(props.getProperty("out", "out"));
+            String seedText = props.getProperty("seed");
+            long baseSeed = seedText != null
+                    ? Long.parseLong(seedText)
+                    : new SplittableRandom().nextLong();
+            template = toParameters(props, baseSeed);
+        } catch (IllegalArgumentException | IOException | UncheckedIOException ex) {
+            LOGGER.error("Invalid batch parameters", ex);
+            System.err.println("Ошибка параметров: " + ex.getMessage());
+            System.exit(2);
+            return;
+        }
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            throw new IOException("Cannot create output directory: " + outDir);
+        }
+
+        RenderMetrics.register();
+        RenderMetrics.get().startLogging(Long.getLong(RenderMetrics.LOG_PERIOD_PROPERTY,
+                RenderMetrics.DEFAULT_LOG_PERIOD));
+        long start = System.nanoTime();
+        if (format.equals("png")) {
+            run(template, count, encoders, colorBatching, stream, outDir);
+        } else {
+            exportVector(template, count, colorBatching, format, outDir);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        RenderMetrics.get().log();
+
+        System.out.printf("Rendered %d image(s) in %.2f s: %.2f images/s%n",
+                count, seconds, count / seconds);
+    }
+
+    /**
+     * Запускает конвейер генерации, растеризации и кодирования.
+     *
+     * @param template параметры первой сцены; у остальных меняется только зерно
+     * @param count    количество сцен
+     * @param encoders количество потоков кодирования PNG
+     * @param colorBatching признак отрисовки фигур группами по цветам палитры
+     * @param stream   признак отрисовки без хранения сцен: сцены не генерируются заранее,
+     *                 а рисуются блоками на этапе растеризации
+     * @param outDir   каталог для файлов
+     */
+    static void run(InputParameters template, int count, int encoders, boolean colorBatching,
+                    boolean stream, File outDir) throws InterruptedException {
+        BlockingQueue<Job> scenes = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        // без хранения сцен память занимают в основном изображения, их очередь короче
+        BlockingQueue<Job> images = new ArrayBlockingQueue<>(stream ? 1 : QUEUE_CAPACITY);
+
+        ExecutorService stages = Executors.newFixedThreadPool(2 + encoders);
+        ExecutorCompletionService<Void> completion = new ExecutorCompletionService<>(stages);
+        TiledRenderer renderer =
+                new TiledRenderer(ForkJoinPool.commonPool(), TiledRenderer.DEFAULT_TILE_SIZE);
+        renderer.setColorBatching(colorBatching);
+        RandomShapeGenerator streamGenerator = new RandomShapeGenerator();
+        streamGenerator.setPool(ForkJoinPool.commonPool());
+        StreamRenderer streamRenderer = new StreamRenderer(streamGenerator,
+                ForkJoinPool.commonPool(), ForkJoinPool.commonPool().getParallelism());
+        streamRenderer.setColorBatching(colorBatching);
+
+        completion.submit(() -> {
+            RandomShapeGenerator generator = new RandomShapeGenerator();
+            generator.setPool(ForkJoinPool.commonPool());
+            for (int k = 0; k < count; k++) {
+                InputParameters params = template.withSeed(template.getSeed() + k);
+                scenes.put(new Job(k, params,
+                        stream ? null : generator.generateScene(params), null));
+            }
+            scenes.put(Job.END);
+            return null;
+        });
+
+        completion.submit(() -> {
+            for (Job job = scenes.take(); job != Job.END; job = scenes.take()) {
+                images.put(new Job(job.index, job.params, null,
+                        rasterize(renderer, streamRenderer, job)));
+            }
+            for (int i = 0; i < encoders; i++) {
+                images.put(Job.END);
+            }
+            return null;
+        });
+
+        for (int i = 0; i < encoders; i++) {
+            completion.submit(() -> {
+                for (Job job = images.take(); job != Job.END; job = images.take()) {
+                    File file = new File(outDir, String.format("scene-%05d.png", job.index));
+                    ImageIO.write(job.image, "png", file);
+                    LOGGER.info("Written {} (seed {})", file, job.params.getSeed());
+                }
+                return null;
+            });
+        }
+
+        try {
+            for (int i = 0; i < 2 + encoders; i++) {
+                completion.take().get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch rendering failed", e.getCause());
+        } finally {
+            // при сбое одного этапа остальные прерываются, иначе они зависнут на очередях
+            stages.shutdownNow();
+        }
+    }
+
+    /**
+     * Записывает сцены в векторные файлы одну за другой. Каждая сцена генерируется
+     * блоками прямо при записи, поэтому конвейер не нужен.
+     *
+     * @param template параметры первой сцены; у остальных меняется только зерно
+     * @param count    количество сцен
+     * @param colorBatching признак группировки фигур по цветам палитры
+     * @param format   расширение файлов: svg или svgz
+     * @param outDir   каталог для файлов
+     */
+    static void exportVector(InputParameters template, int count, boolean colorBatching,
+                             String format, File outDir) throws IOException {
+        RandomShapeGenerator generator = new RandomShapeGenerator();
+        generator.setPool(ForkJoinPool.commonPool());
+        SvgExporter exporter = new SvgExporter(generator);
+        exporter.setColorBatching(colorBatching);
+        for (int k = 0; k < count; k++) {
+            InputParameters params = template.withSeed(template.getSeed() + k);
+            File file = new File(outDir, String.format("scene-%05d.%s", k, format));
+            exporter.export(params, file.toPath());
+            LOGGER.info("Written {} (seed {})", file, params.getSeed());
+        }
+    }
+
+    /**
+     * Рисует сцену задания в новое изображение; если сцены в задании нет,
+     * генерирует ее блоками прямо при отрисовке.
+     */
+    private static BufferedImage rasterize(TiledRenderer renderer, StreamRenderer streamRenderer,
+                                           Job job) {
+        InputParameters p = job.params;
+        int width = (int) Math.ceil(p.getMaxX()) + 2 * DrawPanel.MARGIN;
+        int height = (int) Math.ceil(p.getMaxY()) + 2 * DrawPanel.MARGIN;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        AffineTransform transform =
+                AffineTransform.getTranslateInstance(DrawPanel.MARGIN, DrawPanel.MARGIN);
+        if (job.scene == null) {
+            streamRenderer.render(p, image, transform, Color.WHITE, new GridLayer(p), null);
+        } else {
+            renderer.render(image, transform, Color.WHITE, new GridLayer(p), job.scene);
+        }
+        return image;
+    }
+
+    /**
+     * Собирает параметры из файла {@code --params} и аргументов командной строки.
+     */
+    static Properties parseArgs(String[] args) throws IOException {
+        Properties cli = new Properties();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --key=value, got: " + arg);
+            }
+            cli.setProperty(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        Properties props = new Properties();
+        String file = cli.getProperty("params");
+        if (file != null) {
+            try (InputStream in = new FileInputStream(file)) {
+                props.load(in);
+            }
+        }
+        props.putAll(cli);
+        return props;
+    }
+
+    /**
+     * Строит и проверяет параметры генерации по набору свойств.
+     */
+    static InputParameters toParameters(Properties p, long seed) {
+        double minX = Double.parseDouble(p.getProperty("minX", "0"));
+        double maxX = Double.parseDouble(p.getProperty("maxX", "800"));
+        double minY = Double.parseDouble(p.getProperty("minY", "0"));
+        double maxY = Double.parseDouble(p.getProperty("maxY", "600"));
+        double density = Double.parseDouble(p.getProperty("density", "0"));
+        double grid = Double.parseDouble(p.getProperty("gridStep", "25"));
+
+        if (minX >= maxX || minY >= maxY) {
+            throw new IllegalArgumentException("min coordinates must be less than max coordinates");
+        }
+        if (density < 0 || density > 1) {
+            throw new IllegalArgumentException("density must be in [0, 1]: " + density);
+        }
+        if (grid < 0) {
+            throw new IllegalArgumentException("gridStep must not be negative: " + grid);
+        }
+        String distribution = p.getProperty("distribution", PositionDistribution.DEFAULT);
+        // проверка имени и маски до запуска конвейера
+        PositionDistribution.forSpec(distribution);
+
+        return new InputParameters(
+                Integer.parseInt(p.getProperty("lines", "5")),
+                Integer.parseInt(p.getProperty("circles", "5")),
+                Integer.parseInt(p.getProperty("rectangles", "5")),
+                Integer.parseInt(p.getProperty("triangles", "5")),
+                Integer.parseInt(p.getProperty("parabolas", "5")),
+                Integer.parseInt(p.getProperty("trapezoids", "5")),
+                minX, maxX, minY, maxY, density, grid, seed, distribution);
+    }
+
+    /**
+     * Задание конвейера: номер сцены, ее параметры и результат очередного этапа.
+     */
+    private static final class Job {
+        /** Маркер конца потока заданий. */
+        static final Job END = new Job(-1, null, null, null);
+
+        final int index;
+        final InputParameters params;
+        final ShapeStore scene;
+        final BufferedImage image;
+
+        Job(int index, InputParameters params, ShapeStore scene, BufferedImage image) {
+            this.index = index;
+            this.params = params;
+            this.scene = scene;
+            this.image = image;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.example.shapes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Кэш сгенерированных блоков фигур с вытеснением давно не использованных.
+ * <p>
+ * Фигуры одного типа зависят только от зерна, области, кучности, распределения
+ * и количества фигур этого типа (см. {@link RandomShapeGenerator}), поэтому блок
+ * хранится под ключом из этих полей {@link InputParameters}. Если после генерации
+ * изменилось только количество окружностей, остальные типы берутся из кэша
+ * и заново генерируются только окружности. Шаг сетки в ключ не входит.
+ * <p>
+ * Размер кэша ограничен памятью кучи, занятой блоками ({@link ShapeStore#heapBytes()}).
+ * Блоки отдаются как есть и не должны изменяться. Распределение по маске хранится
+ * под путем к файлу: после замены файла маски кэш нужно очистить.
+ * Обращения учитываются в {@link RenderMetrics#getBlockCacheHits()}
+ * и {@link RenderMetrics#getBlockCacheMisses()}.
+ * <p>
+ * Методы можно вызывать из любого потока.
+ */
+public final class BlockCache {
+
+    /** Наибольший размер хранимых блоков, в байтах. */
+    private final long capacityBytes;
+    /** Блоки в порядке использования: первые — давно не использованные. */
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** Суммарный размер хранимых блоков, в байтах. */
+    private long bytes;
+
+    /**
+     * Создает кэш.
+     *
+     * @param capacityBytes наибольший размер хранимых блоков, в байтах
+     */
+    public BlockCache(long capacityBytes) {
+        if (capacityBytes <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacityBytes);
+        }
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * Возвращает порции фигур одного типа и отмечает их как использованные.
+     *
+     * @param params параметры генерации
+     * @param kind   тип фигур
+     * @return порции в порядке генерации или {@code null}, если их нет в кэше
+     */
+    public synchronized List<ShapeStore> get(InputParameters params, ShapeKind kind) {
+        Entry entry = entries.get(new Key(params, kind));
+        RenderMetrics.get().recordBlockCache(entry != null);
+        return entry != null ? entry.batches : null;
+    }
+
+    /**
+     * Сохраняет порции фигур одного типа и вытесняет давно не использованные блоки,
+     * пока размер кэша больше допустимого. Блок больше всего кэша не сохраняется.
+     *
+     * @param params  параметры генерации
+     * @param kind    тип фигур
+     * @param batches все порции фигур этого типа в порядке генерации
+     */
+    public synchronized void put(InputParameters params, ShapeKind kind, List<ShapeStore> batches) {
+        long size = 0;
+        for (ShapeStore batch : batches) {
+            size += batch.heapBytes();
+        }
+        if (size > capacityBytes) {
+            return;
+        }
+        Entry old = entries.put(new Key(params, kind),
+                new Entry(Collections.unmodifiableList(new ArrayList<>(batches)), size));
+        if (old != null) {
+            bytes -= old.bytes;
+        }
+        bytes += size;
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > capacityBytes && it.hasNext()) {
+            bytes -= it.next().bytes;
+            it.remove();
+        }
+    }
+
+    /** Удаляет все блоки. */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /** @return количество блоков в кэше */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** @return суммарный размер блоков в кэше, в байтах */
+    public synchronized long heapBytes() {
+        return bytes;
+    }
+
+    /**
+     * Блок фигур одного типа и его размер.
+     */
+    private static final class Entry {
+        final List<ShapeStore> batches;
+        final long bytes;
+
+        Entry(List<ShapeStore> batches, long bytes) {
+            this.batches = batches;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Ключ блока: тип и количество фигур и параметры, от которых зависят их положения.
+     */
+    private static final class Key {
+        final ShapeKind kind;
+        final int count;
+        final long seed;
+        final double minX;
+        final double maxX;
+        final double minY;
+        final double maxY;
+        final double density;
+        final String distribution;
+
+        Key(InputParameters p, ShapeKind kind) {
+            this.kind = kind;
+            this.count = RandomShapeGenerator.countOf(p, kind);
+            this.seed = p.getSeed();
+            this.minX = p.getMinX();
+            this.maxX = p.getMaxX();
+            this.minY = p.getMinY();
+            this.maxY = p.getMaxY();
+            this.density = p.getDensity();
+            this.distribution = p.getDistribution();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return kind == k.kind && count == k.count && seed == k.seed
+                    && Double.compare(minX, k.minX) == 0 && Double.compare(maxX, k.maxX) == 0
+                    && Double.compare(minY, k.minY) == 0 && Double.compare(maxY, k.maxY) == 0
+                    && Double.compare(density, k.density) == 0
+                    && Objects.equals(distribution, k.distribution);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, count, seed, minX, maxX, minY, maxY, density, distribution);
+        }
+    }
+}
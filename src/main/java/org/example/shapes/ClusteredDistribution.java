@@ -0,0 +1,48 @@
+package org.example.shapes;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Скопления фигур вокруг случайных центров. Количество скоплений растет
+ * с количеством фигур (от 1 до {@link #MAX_CLUSTERS}); каждая точка выбирает
+ * скопление случайно и отклоняется от его центра по нормальному закону,
+ * тем меньше, чем выше кучность.
+ */
+final class ClusteredDistribution implements PositionDistribution {
+
+    /** Имя распределения. */
+    static final String NAME = "clustered";
+    /** Наибольшее количество скоплений. */
+    static final int MAX_CLUSTERS = 32;
+    /** Количество точек на одно скопление. */
+    private static final int POINTS_PER_CLUSTER = 2_000;
+
+    static final ClusteredDistribution INSTANCE = new ClusteredDistribution();
+
+    private ClusteredDistribution() {
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Sampler prepare(InputParameters params, int count, RandomGenerator random) {
+        int clusters = Math.max(1, Math.min(MAX_CLUSTERS, count / POINTS_PER_CLUSTER));
+        double[] centers = new double[2 * clusters];
+        for (int i = 0; i < centers.length; i++) {
+            // центры не у самого края, чтобы скопления не обрезались наполовину
+            centers[i] = 0.1 + 0.8 * random.nextDouble();
+        }
+        double sigma = 0.08 / (1 + 2 * params.getDensity());
+        return new UnitSampler() {
+            @Override
+            void unit(int index, RandomGenerator r, double[] out) {
+                int c = r.nextInt(clusters);
+                out[0] = truncatedGaussian(centers[2 * c], sigma, r);
+                out[1] = truncatedGaussian(centers[2 * c + 1], sigma, r);
+            }
+        };
+    }
+}
@@ -0,0 +1,890 @@
+package org.example.shapes;
+
+import javax.swing.*;   // стандартная библиотека Swing для создания графического интерфейса
+import java.awt.*;      // классы для работы с графикой (цвета, шрифты, Graphics, Graphics2D)
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Панель, на которой рисуется координатная сетка и все сгенерированные фигуры.
+ * <p>
+ * Сцена показывается через вид — масштаб и сдвиг (см. {@link #getViewTransform()}).
+ * Колесо мыши меняет масштаб относительно точки под курсором, перетаскивание
+ * мышью сдвигает вид.
+ * <p>
+ * Сетка и фигуры рисуются в квадратные внеэкранные плитки, которые хранятся
+ * в кэше {@link TileCache} отдельно для каждого уровня масштаба; давно не
+ * использованные плитки вытесняются. Сетка и фигуры — отдельные слои плиток:
+ * прозрачная плитка фигур накладывается на плитку сетки, поэтому после смены
+ * одного шага сетки перерисовываются только плитки сетки. При прокрутке,
+ * перекрытии другими окнами и сдвиге вида панель в основном копирует готовые
+ * плитки, недостающие плитки рисуются в нескольких потоках, а плитки
+ * в направлении сдвига готовятся заранее. Отрисовка панели не ждет недостающих
+ * плиток: вместо них показывается растянутая или сжатая плитка ближайшего
+ * уровня масштаба из кэша или фон, а готовая плитка перерисовывает свою область.
+ * Плитки перерисовываются после смены сцены или параметров. Детализация фигур
+ * зависит от их размера на экране (см. {@link ShapePainter}), а в очень плотных
+ * сценах сглаживание отключается (см. {@link #setAntialiasingThreshold(double)}).
+ * Фигуры можно рисовать группами по цветам палитры (см. {@link #setColorBatching(boolean)}).
+ * <p>
+ * Содержимое панели — неизменяемый снимок {@link Snapshot}: список сцен и сетка.
+ * Изменяющие методы можно вызывать из любого потока: они под общей блокировкой
+ * строят новый снимок и публикуют его одной записью в volatile-поле, а отрисовка
+ * читает снимок без блокировок. Сцены, добавленные через {@link #appendScene(ShapeStore)},
+ * дорисовываются поверх уже готовых плиток, и перерисовывается только их область.
+ * Методы управления видом вызываются в потоке обработки событий.
+ */
+public class DrawPanel extends JPanel {
+
+    /** Текущее содержимое панели. */
+    private volatile Snapshot snapshot =
+            new Snapshot(Collections.emptyList(), new GridLayer(0, 800, 0, 600, 0), 0);
+    /** Блокировка для изменяющих методов; отрисовка ее не берет. */
+    private final Object updateLock = new Object();
+
+    /** Отступ области рисования от краёв панели, в пикселях. */
+    static final int MARGIN = 20;
+
+    /** Запас вокруг области изменений на толщину линии и сглаживание, в пикселях. */
+    private static final int DIRTY_PAD = 2;
+
+    /** Наибольшее количество плиток в кэше (256 плиток 256x256 — около 64 МБ). */
+    private static final int MAX_CACHED_TILES = 256;
+    /** Наибольшее количество плиток сетки: их дешево перерисовать, поэтому меньше. */
+    private static final int MAX_CACHED_GRID_TILES = 64;
+    /** Запас вокруг плитки на толщину линии и сглаживание, в пикселях. */
+    private static final double STROKE_PAD = 2;
+
+    /** Внеэкранные прозрачные плитки с уже нарисованными фигурами. */
+    private final TileCache tiles =
+            new TileCache(ForkJoinPool.commonPool(), MAX_CACHED_TILES, this::repaintTile);
+    /** Внеэкранные плитки с фоном и сеткой. */
+    private final TileCache gridTiles =
+            new TileCache(ForkJoinPool.commonPool(), MAX_CACHED_GRID_TILES, this::repaintTile);
+    /** Признак того, что сцены изменились на месте и плитки кэша нужно перерисовать. */
+    private volatile boolean tilesStale;
+    /** Эпоха снимка, по которому нарисованы плитки кэша. */
+    private long cacheEpoch = -1;
+    /** Сетка, по которой нарисованы плитки сетки. */
+    private GridLayer cacheGrid;
+    /** Масштаб экрана, с которым нарисованы плитки кэша. */
+    private volatile double cacheScaleX = 1;
+    private volatile double cacheScaleY = 1;
+
+    /** Количество уровней масштаба вида на каждое удвоение. */
+    private static final int LEVELS_PER_DOUBLING = 4;
+    /** Наименьший и наибольший уровни масштаба вида: от 1/64 до 64. */
+    private static final int MIN_ZOOM_LEVEL = -6 * LEVELS_PER_DOUBLING;
+    private static final int MAX_ZOOM_LEVEL = 6 * LEVELS_PER_DOUBLING;
+    /** Сколько столбцов или строк плиток готовится заранее в направлении сдвига. */
+    private static final int PREFETCH_DEPTH = 2;
+    /**
+     * На сколько уровней масштаба в каждую сторону ищется замена недостающей плитке:
+     * замена не больше чем вчетверо растянута или сжата.
+     */
+    private static final int FALLBACK_LEVELS = 2 * LEVELS_PER_DOUBLING;
+
+    /** Текущий вид: уровень масштаба и сдвиг. */
+    private volatile View view = View.DEFAULT;
+    /** Направление последнего сдвига вида по осям: -1, 0 или 1. */
+    private int panDirectionX;
+    private int panDirectionY;
+    /** Признак того, что последняя отрисовка показала все плитки готовыми и полными. */
+    private volatile boolean paintComplete;
+    /** Точка, в которой началось перетаскивание, или {@code null}. */
+    private Point dragStart;
+
+    /** Признак сглаживания фигур. */
+    private volatile boolean antialiasing = true;
+    /** Признак отрисовки фигур группами по цветам палитры. */
+    private volatile boolean colorBatching;
+    /** Порог плотности в фигурах на пиксель, выше которого сглаживание отключается. */
+    private volatile double antialiasingThreshold = DEFAULT_ANTIALIASING_THRESHOLD;
+
+    /** Порог плотности по умолчанию, в фигурах на пиксель. */
+    public static final double DEFAULT_ANTIALIASING_THRESHOLD = 0.1;
+
+    /** Допустимое расстояние от контура фигуры при поиске фигур под курсором, в пикселях. */
+    private static final double HIT_TOLERANCE = 3;
+
+    /**
+     * Создает панель рисования с белым фоном и фиксированным размером.
+     */
+    public DrawPanel() {
+        setBackground(Color.WHITE);
+        setPreferredSize(new Dimension(800 + 2 * MARGIN, 600 + 2 * MARGIN));
+
+        MouseAdapter navigation = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragStart = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragStart != null) {
+                    pan(e.getX() - dragStart.x, e.getY() - dragStart.y);
+                    dragStart = e.getPoint();
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                dragStart = null;
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoom(-e.getWheelRotation(), e.getPoint());
+            }
+        };
+        addMouseListener(navigation);
+        addMouseMotionListener(navigation);
+        addMouseWheelListener(navigation);
+    }
+
+    /**
+     * Возвращает преобразование из координат сцены в координаты панели.
+     *
+     * @return масштаб и сдвиг текущего вида
+     */
+    public AffineTransform getViewTransform() {
+        return view.toPanel();
+    }
+
+    /**
+     * Меняет масштаб вида на заданное количество шагов, оставляя на месте точку панели.
+     * Шаг масштаба — корень четвертой степени из двух; масштаб ограничен от 1/64 до 64.
+     *
+     * @param steps  количество шагов: положительное — приближение, отрицательное — отдаление
+     * @param anchor точка панели, которая остается на месте
+     */
+    public void zoom(int steps, Point anchor) {
+        View v = view;
+        int level = Math.max(MIN_ZOOM_LEVEL, Math.min(MAX_ZOOM_LEVEL, v.level + steps));
+        if (level == v.level) {
+            return;
+        }
+        double factor = View.scaleOf(level) / v.scale;
+        long offsetX = Math.round(anchor.x - (anchor.x - v.offsetX) * factor);
+        long offsetY = Math.round(anchor.y - (anchor.y - v.offsetY) * factor);
+        view = new View(level, (int) offsetX, (int) offsetY);
+        panDirectionX = 0;
+        panDirectionY = 0;
+        repaint();
+    }
+
+    /**
+     * Сдвигает вид.
+     *
+     * @param dx сдвиг по горизонтали в пикселях панели
+     * @param dy сдвиг по вертикали в пикселях панели
+     */
+    public void pan(int dx, int dy) {
+        if (dx == 0 && dy == 0) {
+            return;
+        }
+        View v = view;
+        view = new View(v.level, v.offsetX + dx, v.offsetY + dy);
+        panDirectionX = Integer.signum(dx);
+        panDirectionY = Integer.signum(dy);
+        repaint();
+    }
+
+    /**
+     * Возвращает исходный вид: масштаб 1 и отступ {@link #MARGIN}.
+     */
+    public void resetView() {
+        view = View.DEFAULT;
+        panDirectionX = 0;
+        panDirectionY = 0;
+        repaint();
+    }
+
+    /**
+     * Устанавливает прямоугольную область координат и шаг сетки
+     * и инициирует перерисовку панели. Если изменился только шаг сетки,
+     * плитки фигур остаются в кэше и перерисовываются только плитки сетки.
+     */
+    public void setParameters(double minX, double maxX, double minY, double maxY, double gridStep) {
+        synchronized (updateLock) {
+            Snapshot s = snapshot;
+            GridLayer grid = new GridLayer(minX, maxX, minY, maxY, gridStep);
+            // от области зависит решение о сглаживании фигур (см. useAntialiasing)
+            long epoch = grid.getArea().equals(s.grid.getArea()) ? s.epoch : s.epoch + 1;
+            snapshot = new Snapshot(s.scenes, grid, epoch);
+        }
+        repaint();
+    }
+
+    /**
+     * Включает или выключает сглаживание фигур (по умолчанию включено)
+     * и инициирует перерисовку панели.
+     */
+    public void setAntialiasing(boolean antialiasing) {
+        synchronized (updateLock) {
+            this.antialiasing = antialiasing;
+            Snapshot s = snapshot;
+            snapshot = new Snapshot(s.scenes, s.grid, s.epoch + 1);
+        }
+        repaint();
+    }
+
+    /**
+     * Включает или выключает отрисовку фигур группами по цветам палитры
+     * (по умолчанию выключена) и инициирует перерисовку панели. При группировке
+     * цвета фигур огрубляются, а порядок наложения фигур разных цветов не сохраняется.
+     */
+    public void setColorBatching(boolean colorBatching) {
+        synchronized (updateLock) {
+            this.colorBatching = colorBatching;
+            Snapshot s = snapshot;
+            snapshot = new Snapshot(s.scenes, s.grid, s.epoch + 1);
+        }
+        repaint();
+    }
+
+    /**
+     * Задает плотность сцены в фигурах на пиксель области сетки при текущем масштабе,
+     * выше которой сглаживание отключается автоматически: в плотной сцене отдельные
+     * фигуры все равно не различимы, а сглаживание многократно замедляет отрисовку.
+     *
+     * @param shapesPerPixel порог плотности; {@link Double#POSITIVE_INFINITY} — не отключать
+     */
+    public void setAntialiasingThreshold(double shapesPerPixel) {
+        if (!(shapesPerPixel >= 0)) {
+            throw new IllegalArgumentException("Threshold must not be negative: " + shapesPerPixel);
+        }
+        synchronized (updateLock) {
+            this.antialiasingThreshold = shapesPerPixel;
+            Snapshot s = snapshot;
+            snapshot = new Snapshot(s.scenes, s.grid, s.epoch + 1);
+        }
+        repaint();
+    }
+
+    /**
+     * Заменяет текущую сцену на новую и инициирует перерисовку панели.
+     *
+     * @param newScene сцена с фигурами, которые нужно отрисовать
+     */
+    public void setScene(ShapeStore newScene) {
+        setScenes(Collections.singletonList(newScene));
+    }
+
+    /**
+     * Заменяет текущие сцены на новые и инициирует перерисовку панели.
+     * Сцены рисуются одна поверх другой в порядке списка.
+     *
+     * @param newScenes сцены с фигурами, которые нужно отрисовать
+     */
+    public void setScenes(List<ShapeStore> newScenes) {
+        synchronized (updateLock) {
+            Snapshot s = snapshot;
+            snapshot = new Snapshot(new ArrayList<>(newScenes), s.grid, s.epoch + 1);
+        }
+        repaint();
+    }
+
+    /**
+     * Добавляет сцену поверх текущих. Можно вызывать из любого потока.
+     * Уже нарисованное не перерисовывается: новая сцена дорисовывается на готовые плитки,
+     * а на экране обновляется только ее область.
+     *
+     * @param scene добавляемая сцена
+     */
+    public void appendScene(ShapeStore scene) {
+        synchronized (updateLock) {
+            Snapshot s = snapshot;
+            snapshot = new Snapshot(appended(s.scenes, scene), s.grid, s.epoch);
+        }
+        repaintArea(scene);
+    }
+
+    /**
+     * Добавляет сцену поверх текущих, только если с момента получения эпохи
+     * содержимое панели не заменялось. Позволяет фоновому генератору не показывать
+     * свои порции после того, как панель очищена или занята новой генерацией.
+     *
+     * @param scene         добавляемая сцена
+     * @param expectedEpoch эпоха, полученная из {@link #getEpoch()}
+     * @return {@code true}, если сцена добавлена
+     */
+    public boolean appendScene(ShapeStore scene, long expectedEpoch) {
+        synchronized (updateLock) {
+            Snapshot s = snapshot;
+            if (s.epoch != expectedEpoch) {
+                RenderMetrics.get().recordDroppedBatch();
+                return false;
+            }
+            snapshot = new Snapshot(appended(s.scenes, scene), s.grid, s.epoch);
+        }
+        repaintArea(scene);
+        return true;
+    }
+
+    /**
+     * Удаляет сцену. Можно вызывать из любого потока.
+     * Плитки будут перерисованы, а на экране обновится только область удаленной сцены.
+     *
+     * @param scene удаляемая сцена
+     * @return {@code true}, если сцена была на панели
+     */
+    public boolean removeScene(ShapeStore scene) {
+        synchronized (updateLock) {
+            Snapshot s = snapshot;
+            List<ShapeStore> scenes = new ArrayList<>(s.scenes);
+            if (!scenes.remove(scene)) {
+                return false;
+            }
+            snapshot = new Snapshot(scenes, s.grid, s.epoch + 1);
+        }
+        repaintArea(scene);
+        return true;
+    }
+
+    /**
+     * Перерисовывает панель после изменения содержимого сцен на месте, например
+     * когда потоковая генерация дорисовала изображение {@link RasterLayer}.
+     * Эпоха не меняется. Можно вызывать из любого потока.
+     *
+     * @param expectedEpoch эпоха, полученная из {@link #getEpoch()}
+     * @return {@code false}, если содержимое панели с тех пор заменялось
+     */
+    public boolean scenesChanged(long expectedEpoch) {
+        synchronized (updateLock) {
+            if (snapshot.epoch != expectedEpoch) {
+                return false;
+            }
+            tilesStale = true;
+        }
+        repaint();
+        return true;
+    }
+
+    /** @return сцены, показанные на панели, в порядке отрисовки */
+    public List<ShapeStore> getScenes() {
+        return snapshot.scenes;
+    }
+
+    /**
+     * Возвращает эпоху содержимого панели. Эпоха меняется при любом изменении,
+     * кроме добавления сцен через {@link #appendScene(ShapeStore)} и смены одного
+     * шага сетки.
+     *
+     * @return текущая эпоха
+     */
+    public long getEpoch() {
+        return snapshot.epoch;
+    }
+
+    /**
+     * Заменяет текущую сцену на сцену из пользовательских фигур и инициирует перерисовку панели.
+     *
+     * @param newShapes коллекция фигур, которые нужно отрисовать
+     */
+    public void setShapes(List<DrawableShape> newShapes) {
+        ShapeStore newScene = new ShapeStore();
+        for (DrawableShape s : newShapes) {
+            newScene.addCustomShape(s);
+        }
+        setScene(newScene);
+    }
+
+    /**
+     * Находит фигуры, контур которых проходит рядом с точкой панели.
+     *
+     * @param point точка в координатах панели
+     * @return найденные фигуры в порядке отрисовки (верхняя — последняя)
+     */
+    public List<SpatialIndex.Hit> shapesAt(Point point) {
+        View v = view;
+        double x = (point.x - v.offsetX) / v.scale;
+        double y = (point.y - v.offsetY) / v.scale;
+        List<SpatialIndex.Hit> hits = new ArrayList<>();
+        for (ShapeStore scene : snapshot.scenes) {
+            SpatialIndex index = scene.getIndex();
+            if (index != null) {
+                int[] ids = index.hitTest(x, y, HIT_TOLERANCE / v.scale);
+                hits.addAll(index.resolve(ids));
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Запрашивает перерисовку области, занятой фигурами сцены.
+     * Пользовательские фигуры не имеют известных границ, поэтому для сцен
+     * с ними перерисовывается вся панель.
+     */
+    private void repaintArea(ShapeStore scene) {
+        Rectangle2D bounds = scene.getBounds();
+        if (!scene.customShapes().isEmpty()) {
+            repaint();
+        } else if (bounds != null) {
+            Rectangle r = view.toPanel().createTransformedShape(bounds).getBounds();
+            repaint(r.x - DIRTY_PAD, r.y - DIRTY_PAD,
+                    r.width + 2 * DIRTY_PAD + 1, r.height + 2 * DIRTY_PAD + 1);
+        }
+    }
+
+    /** @return новый список из сцен {@code scenes} и сцены {@code scene} в конце */
+    private static List<ShapeStore> appended(List<ShapeStore> scenes, ShapeStore scene) {
+        List<ShapeStore> result = new ArrayList<>(scenes.size() + 1);
+        result.addAll(scenes);
+        result.add(scene);
+        return result;
+    }
+
+    /**
+     * Переопределенный метод отрисовки Swing.
+     * Копирует на экран готовые плитки сетки и фигур видимой области, а недостающие
+     * запускает на отрисовку и временно заменяет плитками соседних уровней масштаба.
+     * Плитки, на которых не хватает добавленных сцен, копируются как есть и
+     * дорисовываются в пуле потоков. Затем запускается подготовка плиток
+     * в направлении сдвига.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        int w = getWidth();
+        int h = getHeight();
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        Snapshot s = snapshot;
+
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            // на экранах с масштабированием плитки рисуются в физических пикселях
+            AffineTransform tx = g2.getTransform();
+            double scaleX = tx.getScaleX();
+            double scaleY = tx.getScaleY();
+
+            if (tilesStale || cacheEpoch != s.epoch
+                    || scaleX != cacheScaleX || scaleY != cacheScaleY) {
+                tilesStale = false;
+                tiles.clear();
+                cacheEpoch = s.epoch;
+            }
+            if (cacheGrid != s.grid || scaleX != cacheScaleX || scaleY != cacheScaleY) {
+                gridTiles.clear();
+                cacheGrid = s.grid;
+            }
+            cacheScaleX = scaleX;
+            cacheScaleY = scaleY;
+
+            TileJob job = new TileJob(s, view, scaleX, scaleY, getBackground(),
+                    getGraphicsConfiguration());
+            int size = TileCache.TILE_SIZE;
+            int col0 = Math.floorDiv(-job.originX, size);
+            int row0 = Math.floorDiv(-job.originY, size);
+            int col1 = Math.floorDiv((int) Math.ceil(w * scaleX) - 1 - job.originX, size);
+            int row1 = Math.floorDiv((int) Math.ceil(h * scaleY) - 1 - job.originY, size);
+
+            // недостающие плитки рисуются в пуле потоков; готовая плитка
+            // перерисует свою область (см. repaintTile)
+            g2.setTransform(AffineTransform.getTranslateInstance(
+                    tx.getTranslateX(), tx.getTranslateY()));
+            boolean complete = true;
+            for (int row = row0; row <= row1; row++) {
+                for (int col = col0; col <= col1; col++) {
+                    int x = col * size + job.originX;
+                    int y = row * size + job.originY;
+                    TileCache.Tile grid = done(job.requestGrid(col, row));
+                    if (grid != null) {
+                        g2.drawImage(grid.image, x, y, null);
+                    } else {
+                        drawFallback(g2, gridTiles, job, col, row);
+                        complete = false;
+                    }
+                    TileCache.Tile tile = done(job.request(col, row));
+                    if (tile != null) {
+                        if (tile.drawn < s.scenes.size()) {
+                            // с прошлой отрисовки сцены только добавлялись: дорисовываем новые поверх
+                            TileCache.Tile stale = tile;
+                            int c = col;
+                            int r = row;
+                            tiles.update(job.view.level, col, row, tile, () -> job.drawScenes(stale, c, r));
+                            complete = false;
+                        }
+                        g2.drawImage(tile.image, x, y, null);
+                    } else {
+                        drawFallback(g2, tiles, job, col, row);
+                        complete = false;
+                    }
+                }
+            }
+            paintComplete = complete;
+
+            prefetch(job, col0, col1, row0, row1);
+        } finally {
+            g2.dispose();
+        }
+        RenderMetrics.get().recordPaint(System.nanoTime() - start, s.scenes);
+    }
+
+    /**
+     * Сообщает, показала ли последняя отрисовка панели все видимые плитки
+     * готовыми и со всеми сценами, без временной замены. Нужна тестам
+     * производительности, которые перерисовывают панель до готовности.
+     *
+     * @return {@code true}, если последняя отрисовка была полной
+     */
+    boolean isPaintComplete() {
+        return paintComplete;
+    }
+
+    /**
+     * Возвращает плитку, если задача ее отрисовки уже завершена.
+     *
+     * @return плитка или {@code null}, если она еще рисуется или отрисовка отменена
+     * @throws IllegalStateException если отрисовка плитки завершилась ошибкой
+     */
+    private static TileCache.Tile done(Future<TileCache.Tile> future) {
+        if (!future.isDone() || future.isCancelled()) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Tile rendering failed", e.getCause());
+        }
+    }
+
+    /**
+     * Рисует вместо недостающей плитки плитки ближайшего уровня масштаба, которые
+     * целиком покрывают ее область и уже есть в кэше, растягивая или сжимая их.
+     * Если таких нет, на месте плитки остается фон панели.
+     */
+    private static void drawFallback(Graphics2D g2, TileCache cache, TileJob job, int col, int row) {
+        int size = TileCache.TILE_SIZE;
+        for (int d = 1; d <= FALLBACK_LEVELS; d++) {
+            for (int level = job.view.level - d; level <= job.view.level + d; level += 2 * d) {
+                if (level < MIN_ZOOM_LEVEL || level > MAX_ZOOM_LEVEL) {
+                    continue;
+                }
+                // во сколько раз плитки уровня level крупнее в пикселях, чем плитки вида
+                double factor = View.scaleOf(level) / job.view.scale;
+                int c0 = (int) Math.floor(col * factor);
+                int c1 = (int) Math.ceil((col + 1) * factor) - 1;
+                int r0 = (int) Math.floor(row * factor);
+                int r1 = (int) Math.ceil((row + 1) * factor) - 1;
+                TileCache.Tile[] found = cached(cache, level, job.variantAt(level), c0, c1, r0, r1);
+                if (found == null) {
+                    continue;
+                }
+                Graphics2D fg = (Graphics2D) g2.create();
+                try {
+                    fg.clipRect(col * size + job.originX, row * size + job.originY, size, size);
+                    fg.translate(job.originX, job.originY);
+                    fg.scale(1 / factor, 1 / factor);
+                    fg.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                            RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    int n = 0;
+                    for (int r = r0; r <= r1; r++) {
+                        for (int c = c0; c <= c1; c++) {
+                            fg.drawImage(found[n++].image, c * size, r * size, null);
+                        }
+                    }
+                } finally {
+                    fg.dispose();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return плитки уровня и варианта из столбцов c0..c1 и строк r0..r1 по строкам
+     *         или {@code null}, если какой-то из них нет в кэше
+     */
+    private static TileCache.Tile[] cached(TileCache cache, int level, int variant,
+                                           int c0, int c1, int r0, int r1) {
+        TileCache.Tile[] result = new TileCache.Tile[(c1 - c0 + 1) * (r1 - r0 + 1)];
+        int n = 0;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                TileCache.Tile tile = cache.get(level, variant, c, r);
+                if (tile == null) {
+                    return null;
+                }
+                result[n++] = tile;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Перерисовывает область готовой плитки, если она на уровне масштаба текущего вида.
+     * Вызывается в потоке отрисовки плитки.
+     */
+    private void repaintTile(int level, int col, int row) {
+        View v = view;
+        if (level != v.level) {
+            return;
+        }
+        double scaleX = cacheScaleX;
+        double scaleY = cacheScaleY;
+        int size = TileCache.TILE_SIZE;
+        int originX = (int) Math.floor(v.offsetX * scaleX);
+        int originY = (int) Math.floor(v.offsetY * scaleY);
+        int x0 = (int) Math.floor((col * size + originX) / scaleX);
+        int y0 = (int) Math.floor((row * size + originY) / scaleY);
+        int x1 = (int) Math.ceil(((col + 1) * size + originX) / scaleX);
+        int y1 = (int) Math.ceil(((row + 1) * size + originY) / scaleY);
+        repaint(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /**
+     * Учитывает запрос перерисовки в {@link RenderMetrics}; сюда сходятся
+     * все варианты {@code repaint}.
+     */
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        RenderMetrics.get().recordRepaintRequest();
+        super.repaint(tm, x, y, width, height);
+    }
+
+    /**
+     * Заранее рисует плитки за краем видимой области в направлении последнего сдвига:
+     * при сдвиге вида вправо открывается левая часть сцены, и наоборот.
+     */
+    private void prefetch(TileJob job, int col0, int col1, int row0, int row1) {
+        for (int d = 1; d <= PREFETCH_DEPTH; d++) {
+            if (panDirectionX != 0) {
+                int col = panDirectionX > 0 ? col0 - d : col1 + d;
+                for (int row = row0; row <= row1; row++) {
+                    job.requestGrid(col, row);
+                    job.request(col, row);
+                }
+            }
+            if (panDirectionY != 0) {
+                int row = panDirectionY > 0 ? row0 - d : row1 + d;
+                for (int col = col0; col <= col1; col++) {
+                    job.requestGrid(col, row);
+                    job.request(col, row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Решает, рисовать ли сцены со сглаживанием, по плотности фигур на пиксель
+     * области сетки при заданном масштабе.
+     */
+    private boolean useAntialiasing(Snapshot s, double scaleX, double scaleY) {
+        Rectangle2D area = s.grid.getArea();
+        double pixels = Math.max(1, area.getWidth() * scaleX) * Math.max(1, area.getHeight() * scaleY);
+        return antialiasing && shapeCount(s.scenes) <= antialiasingThreshold * pixels;
+    }
+
+    /** @return общее количество фигур во всех сценах */
+    private static int shapeCount(List<ShapeStore> scenes) {
+        int total = 0;
+        for (ShapeStore scene : scenes) {
+            total += scene.size();
+        }
+        return total;
+    }
+
+    /**
+     * Отрисовка плиток одного кадра: снимок, вид и параметры экрана, с которыми
+     * плитки рисуются в пуле потоков. Плитки из кэша не перерисовываются.
+     * <p>
+     * Решение о сглаживании входит в ключ плитки как вариант отрисовки: после
+     * добавления сцен плотность может перейти порог, и тогда плитки рисуются заново
+     * без сглаживания, а не дорисовываются поверх сглаженных.
+     */
+    private final class TileJob {
+        final Snapshot snapshot;
+        final View view;
+        /** Полный масштаб из координат сцены в пиксели устройства. */
+        final double scaleX;
+        final double scaleY;
+        /** Положение начала координат сцены в пикселях устройства относительно панели. */
+        final int originX;
+        final int originY;
+        final Color background;
+        final GraphicsConfiguration gc;
+        final boolean antialias;
+        /** Вариант отрисовки плиток в кэше: 1 — со сглаживанием, 0 — без. */
+        final int variant;
+        final boolean batching;
+
+        TileJob(Snapshot snapshot, View view, double deviceScaleX, double deviceScaleY,
+                Color background, GraphicsConfiguration gc) {
+            this.snapshot = snapshot;
+            this.view = view;
+            this.scaleX = view.scale * deviceScaleX;
+            this.scaleY = view.scale * deviceScaleY;
+            this.originX = (int) Math.floor(view.offsetX * deviceScaleX);
+            this.originY = (int) Math.floor(view.offsetY * deviceScaleY);
+            this.background = background;
+            this.gc = gc;
+            this.antialias = useAntialiasing(snapshot, scaleX, scaleY);
+            this.variant = antialias ? 1 : 0;
+            this.batching = colorBatching;
+        }
+
+        /** @return задача, результатом которой будет плитка фигур из кэша или новая плитка */
+        Future<TileCache.Tile> request(int col, int row) {
+            return tiles.request(view.level, variant, col, row, () -> render(col, row));
+        }
+
+        /** @return задача, результатом которой будет плитка сетки из кэша или новая плитка */
+        Future<TileCache.Tile> requestGrid(int col, int row) {
+            return gridTiles.request(view.level, variant, col, row, () -> renderGrid(col, row));
+        }
+
+        /**
+         * @return вариант отрисовки плиток снимка на другом уровне масштаба:
+         *         решение о сглаживании зависит от масштаба
+         */
+        int variantAt(int level) {
+            double factor = View.scaleOf(level) / view.scale;
+            return useAntialiasing(snapshot, scaleX * factor, scaleY * factor) ? 1 : 0;
+        }
+
+        /**
+         * Рисует новую прозрачную плитку со всеми сценами снимка.
+         */
+        TileCache.Tile render(int col, int row) {
+            int size = TileCache.TILE_SIZE;
+            BufferedImage image = gc != null
+                    ? gc.createCompatibleImage(size, size, Transparency.TRANSLUCENT)
+                    : new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D tg = image.createGraphics();
+            try {
+                draw(tg, snapshot.scenes, null, col, row);
+            } finally {
+                tg.dispose();
+            }
+            return new TileCache.Tile(image, snapshot.scenes.size());
+        }
+
+        /**
+         * Рисует новую плитку сетки: фон и сетку снимка.
+         */
+        TileCache.Tile renderGrid(int col, int row) {
+            int size = TileCache.TILE_SIZE;
+            BufferedImage image = gc != null
+                    ? gc.createCompatibleImage(size, size, Transparency.OPAQUE)
+                    : new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+            Graphics2D tg = image.createGraphics();
+            try {
+                tg.setColor(background);
+                tg.fillRect(0, 0, size, size);
+                draw(tg, Collections.emptyList(), snapshot.grid, col, row);
+            } finally {
+                tg.dispose();
+            }
+            return new TileCache.Tile(image, 0);
+        }
+
+        /**
+         * Дорисовывает на плитку сцены, добавленные после ее отрисовки.
+         * Вызывается в пуле потоков, не больше одной дорисовки плитки одновременно.
+         */
+        void drawScenes(TileCache.Tile tile, int col, int row) {
+            Graphics2D tg = tile.image.createGraphics();
+            try {
+                draw(tg, snapshot.scenes.subList(tile.drawn, snapshot.scenes.size()), null, col, row);
+            } finally {
+                tg.dispose();
+            }
+            tile.drawn = snapshot.scenes.size();
+        }
+
+        /**
+         * Рисует сетку (если задана) и фигуры сцен, попадающие на плитку.
+         */
+        private void draw(Graphics2D tg, List<ShapeStore> scenes, GridLayer grid, int col, int row) {
+            int size = TileCache.TILE_SIZE;
+            tg.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialias
+                    ? RenderingHints.VALUE_ANTIALIAS_ON
+                    : RenderingHints.VALUE_ANTIALIAS_OFF);
+            tg.setRenderingHint(ShapePainter.KEY_DRAW_ORDER, batching
+                    ? ShapePainter.VALUE_ORDER_BY_COLOR
+                    : ShapePainter.VALUE_ORDER_STRICT);
+            tg.clipRect(0, 0, size, size);
+            tg.translate(-col * size, -row * size);
+            tg.scale(scaleX, scaleY);
+            // линии остаются толщиной в пиксель панели при любом масштабе вида
+            tg.setStroke(new BasicStroke((float) (1 / view.scale)));
+
+            if (grid != null) {
+                grid.draw(tg);
+            }
+            Rectangle2D area = new Rectangle2D.Double(
+                    (col * size - STROKE_PAD) / scaleX, (row * size - STROKE_PAD) / scaleY,
+                    (size + 2 * STROKE_PAD) / scaleX, (size + 2 * STROKE_PAD) / scaleY);
+            for (ShapeStore scene : scenes) {
+                scene.draw(tg, area);
+            }
+        }
+    }
+
+    /**
+     * Вид панели: уровень масштаба и положение начала координат сцены в пикселях панели.
+     */
+    private static final class View {
+        /** Исходный вид: масштаб 1, сцена сдвинута на отступ. */
+        static final View DEFAULT = new View(0, MARGIN, MARGIN);
+
+        final int level;
+        final double scale;
+        final int offsetX;
+        final int offsetY;
+
+        View(int level, int offsetX, int offsetY) {
+            this.level = level;
+            this.scale = scaleOf(level);
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+        }
+
+        /** @return масштаб уровня: 2 в степени level / LEVELS_PER_DOUBLING */
+        static double scaleOf(int level) {
+            return Math.pow(2, (double) level / LEVELS_PER_DOUBLING);
+        }
+
+        /** @return преобразование из координат сцены в координаты панели */
+        AffineTransform toPanel() {
+            AffineTransform t = AffineTransform.getTranslateInstance(offsetX, offsetY);
+            t.scale(scale, scale);
+            return t;
+        }
+    }
+
+    /**
+     * Неизменяемое содержимое панели: сцены, сетка и эпоха.
+     * Эпоха увеличивается при любом изменении, кроме добавления сцен в конец
+     * и смены шага сетки без смены области.
+     */
+    private static final class Snapshot {
+        final List<ShapeStore> scenes;
+        final GridLayer grid;
+        final long epoch;
+
+        Snapshot(List<ShapeStore> scenes, GridLayer grid, long epoch) {
+            this.scenes = Collections.unmodifiableList(scenes);
+            this.grid = grid;
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.shapes;
+
+import java.awt.Graphics2D;
+
+/**
+ * Интерфейс для пользовательских фигур на панели.
+ * Стандартные фигуры генератора хранятся в {@link ShapeBuffer}; этот интерфейс
+ * остается точкой расширения для фигур других типов.
+ */
+public interface DrawableShape {
+    void draw(Graphics2D g2);
+}
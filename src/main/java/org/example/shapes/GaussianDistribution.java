@@ -0,0 +1,36 @@
+package org.example.shapes;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Нормальное распределение вокруг центра области, усеченное ее границами.
+ * Стандартное отклонение по каждой оси — четверть ширины области при нулевой
+ * кучности и в {@code 1 + 4 * кучность} раз меньше при большей.
+ */
+final class GaussianDistribution implements PositionDistribution {
+
+    /** Имя распределения. */
+    static final String NAME = "gaussian";
+
+    static final GaussianDistribution INSTANCE = new GaussianDistribution();
+
+    private GaussianDistribution() {
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Sampler prepare(InputParameters params, int count, RandomGenerator random) {
+        double sigma = 0.25 / (1 + 4 * params.getDensity());
+        return new UnitSampler() {
+            @Override
+            void unit(int index, RandomGenerator r, double[] out) {
+                out[0] = truncatedGaussian(0.5, sigma, r);
+                out[1] = truncatedGaussian(0.5, sigma, r);
+            }
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.shapes;
+
+import java.awt.*;      // классы для работы с графикой (цвета, Graphics2D)
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Прямоугольная координатная сетка в заданной области.
+ * Рисуется под фигурами цветом {@link Color#LIGHT_GRAY}.
+ * По каждой оси рисуется не больше {@link #MAX_LINES} линий: у более частой
+ * сетки рисуется каждая k-я линия.
+ */
+public final class GridLayer implements DrawableShape {
+
+    /**
+     * Наибольшее количество линий по одной оси — линия на каждый пиксель
+     * изображения наибольшего размера.
+     */
+    public static final int MAX_LINES = RasterLayer.MAX_SIDE;
+
+    /** Границы прямоугольной области по оси X. */
+    private final double minX;
+    private final double maxX;
+    /** Границы прямоугольной области по оси Y. */
+    private final double minY;
+    private final double maxY;
+    /** Шаг сетки (0 — без сетки). */
+    private final double step;
+
+    /**
+     * Создает сетку для заданной области.
+     *
+     * @param minX минимальное значение X
+     * @param maxX максимальное значение X
+     * @param minY минимальное значение Y
+     * @param maxY максимальное значение Y
+     * @param step шаг сетки, 0 — без сетки
+     */
+    public GridLayer(double minX, double maxX, double minY, double maxY, double step) {
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.step = step;
+    }
+
+    /**
+     * Создает сетку по области и шагу из параметров генерации.
+     *
+     * @param p параметры генерации
+     */
+    public GridLayer(InputParameters p) {
+        this(p.getMinX(), p.getMaxX(), p.getMinY(), p.getMaxY(), p.getGridStep());
+    }
+
+    /** @return область сетки в координатах сцены */
+    public Rectangle2D getArea() {
+        return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Рисует сетку; при нулевом шаге ничего не делает.
+     */
+    @Override
+    public void draw(Graphics2D g2) {
+        if (!(step > 0)) {
+            return;
+        }
+        g2.setColor(Color.LIGHT_GRAY);
+        // координата линии считается по ее номеру: при шаге меньше точности
+        // координат сложение x += step не продвигалось бы
+        double stepX = coarsened(maxX - minX);
+        for (int i = 0, n = lineCount(maxX - minX, stepX); i < n; i++) {
+            int px = (int) (minX + i * stepX);
+            g2.drawLine(px, (int) minY, px, (int) maxY);
+        }
+        double stepY = coarsened(maxY - minY);
+        for (int i = 0, n = lineCount(maxY - minY, stepY); i < n; i++) {
+            int py = (int) (minY + i * stepY);
+            g2.drawLine((int) minX, py, (int) maxX, py);
+        }
+    }
+
+    /**
+     * @return шаг, кратный шагу сетки, при котором на отрезке длины length
+     *         помещается не больше {@link #MAX_LINES} линий
+     */
+    private double coarsened(double length) {
+        double intervals = length / step;
+        return intervals > MAX_LINES - 1 ? step * Math.ceil(intervals / (MAX_LINES - 1)) : step;
+    }
+
+    /** @return количество линий с шагом s на отрезке длины length, включая оба конца */
+    private static int lineCount(double length, double s) {
+        return length < 0 ? 0 : (int) Math.min(MAX_LINES, Math.floor(length / s) + 1);
+    }
+}
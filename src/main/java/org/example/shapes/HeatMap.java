@@ -0,0 +1,184 @@
+package org.example.shapes;
+
+import java.awt.*;                           // базовые графические классы AWT
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Карта плотности мелких фигур для {@link ShapePainter}.
+ * <p>
+ * Карта покрывает прямоугольную область в пикселях устройства ячейками
+ * по {@code 2^shift} пикселей в стороне: размер ячейки подбирается так, чтобы
+ * ячеек было не больше {@link #MAX_CELLS}. Небольшие области (панель рисует
+ * плитками) считаются попиксельно, а для больших изображений карта становится
+ * грубее, но ее память не превышает {@link #MAX_BYTES} байт.
+ * <p>
+ * Массивы и изображение карты создаются при первой мелкой фигуре и переиспользуются
+ * следующими проходами отрисовки (у каждого потока своя карта, см. {@link ShapePainter});
+ * массивы растут только до размера наибольшей области. Очищаются только ячейки,
+ * в которые попали фигуры. Объект не потокобезопасен.
+ */
+final class HeatMap {
+
+    /** Наибольшее количество ячеек карты. */
+    static final int MAX_CELLS = 1 << 20;
+    /** Наибольшая память карты: четыре счетчика и пиксель изображения на ячейку. */
+    static final long MAX_BYTES = 20L * MAX_CELLS;
+    /** Прибавка непрозрачности пикселя за каждую фигуру (из 255). */
+    private static final int ALPHA_PER_SHAPE = 64;
+
+    /** Количество фигур и суммы компонент цвета по ячейкам; создаются при первой фигуре. */
+    private int[] count;
+    private int[] red;
+    private int[] green;
+    private int[] blue;
+    /** Изображение карты и строка его пикселей; создаются при первой отрисовке. */
+    private BufferedImage image;
+    private int[] row;
+
+    /** Область карты в пикселях устройства. */
+    private final Rectangle area = new Rectangle();
+    /** Двоичный логарифм стороны ячейки в пикселях. */
+    private int shift;
+    /** Количество ячеек по горизонтали и вертикали. */
+    private int columns;
+    private int rows;
+    /** Ячейки, в которые попали фигуры: [minColumn, maxColumn] x [minRow, maxRow]. */
+    private int minColumn;
+    private int minRow;
+    private int maxColumn = -1;
+    private int maxRow = -1;
+
+    /**
+     * Очищает карту и задает ее область.
+     *
+     * @param area область в пикселях устройства, не пустая
+     */
+    void reset(Rectangle area) {
+        clear();
+        this.area.setBounds(area);
+        int s = 0;
+        while ((long) cells(area.width, s) * cells(area.height, s) > MAX_CELLS) {
+            s++;
+        }
+        shift = s;
+        columns = cells(area.width, s);
+        rows = cells(area.height, s);
+    }
+
+    private static int cells(int pixels, int shift) {
+        return (pixels + (1 << shift) - 1) >> shift;
+    }
+
+    /** @return {@code true}, если с последней отрисовки в карту не попало ни одной фигуры */
+    boolean isEmpty() {
+        return maxColumn < 0;
+    }
+
+    /**
+     * Добавляет фигуру в пиксель устройства; пиксели вне области пропускаются.
+     *
+     * @param x    координата X пикселя устройства
+     * @param y    координата Y пикселя устройства
+     * @param argb цвет фигуры
+     */
+    void add(int x, int y, int argb) {
+        int px = x - area.x;
+        int py = y - area.y;
+        if (px < 0 || py < 0 || px >= area.width || py >= area.height) {
+            return;
+        }
+        int column = px >> shift;
+        int line = py >> shift;
+        if (count == null || count.length < columns * rows) {
+            int n = columns * rows;
+            count = new int[n];
+            red = new int[n];
+            green = new int[n];
+            blue = new int[n];
+        }
+        int p = line * columns + column;
+        // суммы ячейки не очищаются: первая фигура ячейки их перезаписывает
+        if (count[p]++ == 0) {
+            red[p] = argb >> 16 & 0xFF;
+            green[p] = argb >> 8 & 0xFF;
+            blue[p] = argb & 0xFF;
+        } else {
+            red[p] += argb >> 16 & 0xFF;
+            green[p] += argb >> 8 & 0xFF;
+            blue[p] += argb & 0xFF;
+        }
+        if (isEmpty()) {
+            minColumn = maxColumn = column;
+            minRow = maxRow = line;
+        } else {
+            minColumn = Math.min(minColumn, column);
+            maxColumn = Math.max(maxColumn, column);
+            minRow = Math.min(minRow, line);
+            maxRow = Math.max(maxRow, line);
+        }
+    }
+
+    /**
+     * Рисует заполненную часть карты в контекст и очищает карту. Ячейка получает
+     * средний цвет попавших в нее фигур и тем большую непрозрачность, чем их больше
+     * на пиксель.
+     *
+     * @param g2 графический контекст; преобразование и отсечение восстанавливаются
+     */
+    void drawTo(Graphics2D g2) {
+        if (isEmpty()) {
+            return;
+        }
+        int w = maxColumn - minColumn + 1;
+        int h = maxRow - minRow + 1;
+        if (image == null || image.getWidth() < w || image.getHeight() < h) {
+            int iw = Math.max(w, image == null ? 0 : image.getWidth());
+            int ih = Math.max(h, image == null ? 0 : image.getHeight());
+            // широкая область после высокой не должна дать изображение больше MAX_CELLS
+            if ((long) iw * ih > MAX_CELLS) {
+                iw = w;
+                ih = h;
+            }
+            image = new BufferedImage(iw, ih, BufferedImage.TYPE_INT_ARGB);
+            row = new int[iw];
+        }
+        int pixelsPerCell = 2 * shift;
+        for (int y = 0; y < h; y++) {
+            int p = (minRow + y) * columns + minColumn;
+            for (int x = 0; x < w; x++, p++) {
+                int n = count[p];
+                if (n == 0) {
+                    row[x] = 0;
+                    continue;
+                }
+                int alpha = Math.max(1, Math.min(255, n * ALPHA_PER_SHAPE >> pixelsPerCell));
+                row[x] = alpha << 24 | red[p] / n << 16 | green[p] / n << 8 | blue[p] / n;
+            }
+            image.setRGB(0, y, w, 1, row, 0, w);
+        }
+
+        // карта задана в пикселях устройства, поэтому рисуется без преобразования сцены
+        AffineTransform saved = g2.getTransform();
+        Shape savedClip = g2.getClip();
+        g2.setTransform(new AffineTransform());
+        g2.clip(area);
+        int x0 = area.x + (minColumn << shift);
+        int y0 = area.y + (minRow << shift);
+        g2.drawImage(image, x0, y0, x0 + (w << shift), y0 + (h << shift), 0, 0, w, h, null);
+        g2.setTransform(saved);
+        g2.setClip(savedClip);
+        clear();
+    }
+
+    /** Обнуляет счетчики заполненной части карты. */
+    private void clear() {
+        for (int y = minRow; y <= maxRow; y++) {
+            int p = y * columns;
+            Arrays.fill(count, p + minColumn, p + maxColumn + 1, 0);
+        }
+        maxColumn = -1;
+        maxRow = -1;
+    }
+}
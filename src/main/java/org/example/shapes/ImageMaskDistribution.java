@@ -0,0 +1,127 @@
+package org.example.shapes;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.random.RandomGenerator;
+
+/**
+ * Распределение по маске из изображения: изображение растягивается на всю область,
+ * и вероятность попасть в пиксель пропорциональна его темноте, умноженной
+ * на непрозрачность. Белые и прозрачные пиксели фигур не получают.
+ * <p>
+ * Пиксель выбирается двоичным поиском по накопленным весам, точка внутри пикселя —
+ * равномерно. Изображения больше {@link #MAX_PIXELS} пикселей уменьшаются.
+ * Кучность не учитывается.
+ */
+final class ImageMaskDistribution implements PositionDistribution {
+
+    /** Имя распределения. */
+    static final String NAME = "mask";
+    /** Наибольшее количество пикселей маски. */
+    static final int MAX_PIXELS = 1 << 20;
+
+    /** Размер маски в пикселях. */
+    private final int width;
+    private final int height;
+    /** Накопленные веса пикселей по строкам; последний элемент — сумма весов. */
+    private final double[] cumulative;
+
+    /**
+     * Загружает маску из изображения.
+     *
+     * @param path путь к изображению в формате, который читает {@link ImageIO}
+     * @throws UncheckedIOException     если изображение не удалось прочитать
+     * @throws IllegalArgumentException если формат не поддерживается или маска пуста
+     */
+    ImageMaskDistribution(String path) {
+        BufferedImage image;
+        try {
+            image = ImageIO.read(new File(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read mask image " + path, e);
+        }
+        if (image == null) {
+            throw new IllegalArgumentException("Unsupported mask image format: " + path);
+        }
+        if ((long) image.getWidth() * image.getHeight() > MAX_PIXELS) {
+            image = downscale(image);
+        }
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.cumulative = new double[width * height];
+        int[] row = new int[width];
+        double total = 0;
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                total += weight(row[x]);
+                cumulative[y * width + x] = total;
+            }
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Mask image has no dark pixels: " + path);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Sampler prepare(InputParameters params, int count, RandomGenerator random) {
+        double total = cumulative[cumulative.length - 1];
+        return new UnitSampler() {
+            @Override
+            void unit(int index, RandomGenerator r, double[] out) {
+                // первый пиксель, накопленный вес которого больше выбранного значения
+                double target = r.nextDouble() * total;
+                int lo = 0;
+                int hi = cumulative.length - 1;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (cumulative[mid] > target) {
+                        hi = mid;
+                    } else {
+                        lo = mid + 1;
+                    }
+                }
+                int p = lo;
+                out[0] = (p % width + r.nextDouble()) / width;
+                out[1] = (p / width + r.nextDouble()) / height;
+            }
+        };
+    }
+
+    /** @return вес пикселя: темнота (1 — черный), умноженная на непрозрачность */
+    private static double weight(int argb) {
+        int alpha = argb >>> 24;
+        double luminance = (0.299 * (argb >> 16 & 0xFF) + 0.587 * (argb >> 8 & 0xFF)
+                + 0.114 * (argb & 0xFF)) / 255;
+        return (1 - luminance) * alpha / 255;
+    }
+
+    /**
+     * Уменьшает изображение с сохранением пропорций до {@link #MAX_PIXELS} пикселей.
+     */
+    private static BufferedImage downscale(BufferedImage image) {
+        double k = Math.sqrt((double) MAX_PIXELS / ((long) image.getWidth() * image.getHeight()));
+        int w = Math.max(1, (int) (image.getWidth() * k));
+        int h = Math.max(1, (int) (image.getHeight() * k));
+        BufferedImage small = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = small.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, w, h, null);
+        } finally {
+            g.dispose();
+        }
+        return small;
+    }
+}
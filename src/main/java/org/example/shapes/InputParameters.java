@@ -0,0 +1,212 @@
+package org.example.shapes;
+
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * Хранит входные параметры генерации рисунка:
+ * количество фигур каждого типа, область координат, кучность, шаг сетки, зерно
+ * и распределение положений фигур ({@link PositionDistribution}).
+ * Сгенерированная сцена однозначно определяется этими параметрами,
+ * поэтому вместо готового рисунка достаточно хранить их и повторить генерацию.
+ */
+public class InputParameters {
+
+    /** Количество случайных линий. */
+    private final int lineCount;
+    /** Количество окружностей. */
+    private final int circleCount;
+    /** Количество прямоугольников. */
+    private final int rectangleCount;
+    /** Количество треугольников. */
+    private final int triangleCount;
+    /** Количество парабол. */
+    private final int parabolaCount;
+    /** Количество трапеций. */
+    private final int trapezoidCount;
+
+    /** Минимальное значение X области генерации. */
+    private final double minX;
+    /** Максимальное значение X области генерации. */
+    private final double maxX;
+    /** Минимальное значение Y области генерации. */
+    private final double minY;
+    /** Максимальное значение Y области генерации. */
+    private final double maxY;
+
+    /** Параметр кучности (0 — равномерно, 1 — максимум в центре). */
+    private final double density;
+    /** Шаг координатной сетки (0 — без сетки). */
+    private final double gridStep;
+    /** Зерно генератора случайных чисел. */
+    private final long seed;
+    /** Распределение положений фигур, см. {@link PositionDistribution#forSpec(String)}. */
+    private final String distribution;
+
+    /**
+     * Создает объект с параметрами генерации и случайным зерном.
+     *
+     * @param lineCount      количество линий
+     * @param circleCount    количество окружностей
+     * @param rectangleCount количество прямоугольников
+     * @param triangleCount  количество треугольников
+     * @param parabolaCount  количество парабол
+     * @param trapezoidCount количество трапеций
+     * @param minX           минимальное значение X
+     * @param maxX           максимальное значение X
+     * @param minY           минимальное значение Y
+     * @param maxY           максимальное значение Y
+     * @param density        кучность
+     * @param gridStep       шаг координатной сетки
+     */
+    public InputParameters(int lineCount, int circleCount, int rectangleCount,
+                           int triangleCount, int parabolaCount, int trapezoidCount,
+                           double minX, double maxX, double minY, double maxY,
+                           double density, double gridStep) {
+        this(lineCount, circleCount, rectangleCount, triangleCount, parabolaCount, trapezoidCount,
+                minX, maxX, minY, maxY, density, gridStep, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Создает объект с полным набором параметров генерации.
+     *
+     * @param lineCount      количество линий
+     * @param circleCount    количество окружностей
+     * @param rectangleCount количество прямоугольников
+     * @param triangleCount  количество треугольников
+     * @param parabolaCount  количество парабол
+     * @param trapezoidCount количество трапеций
+     * @param minX           минимальное значение X
+     * @param maxX           максимальное значение X
+     * @param minY           минимальное значение Y
+     * @param maxY           максимальное значение Y
+     * @param density        кучность
+     * @param gridStep       шаг координатной сетки
+     * @param seed           зерно генератора случайных чисел
+     */
+    public InputParameters(int lineCount, int circleCount, int rectangleCount,
+                           int triangleCount, int parabolaCount, int trapezoidCount,
+                           double minX, double maxX, double minY, double maxY,
+                           double density, double gridStep, long seed) {
+        this(lineCount, circleCount, rectangleCount, triangleCount, parabolaCount, trapezoidCount,
+                minX, maxX, minY, maxY, density, gridStep, seed, PositionDistribution.DEFAULT);
+    }
+
+    /**
+     * Создает объект с полным набором параметров генерации и распределением положений.
+     *
+     * @param lineCount      количество линий
+     * @param circleCount    количество окружностей
+     * @param rectangleCount количество прямоугольников
+     * @param triangleCount  количество треугольников
+     * @param parabolaCount  количество парабол
+     * @param trapezoidCount количество трапеций
+     * @param minX           минимальное значение X
+     * @param maxX           максимальное значение X
+     * @param minY           минимальное значение Y
+     * @param maxY           максимальное значение Y
+     * @param density        кучность
+     * @param gridStep       шаг координатной сетки
+     * @param seed           зерно генератора случайных чисел
+     * @param distribution   распределение положений, например {@code "gaussian"}
+     *                       (см. {@link PositionDistribution#forSpec(String)})
+     */
+    public InputParameters(int lineCount, int circleCount, int rectangleCount,
+                           int triangleCount, int parabolaCount, int trapezoidCount,
+                           double minX, double maxX, double minY, double maxY,
+                           double density, double gridStep, long seed, String distribution) {
+        this.lineCount = lineCount;
+        this.circleCount = circleCount;
+        this.rectangleCount = rectangleCount;
+        this.triangleCount = triangleCount;
+        this.parabolaCount = parabolaCount;
+        this.trapezoidCount = trapezoidCount;
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.density = density;
+        this.gridStep = gridStep;
+        this.seed = seed;
+        this.distribution = distribution;
+    }
+
+    /**
+     * Возвращает копию параметров с другим зерном.
+     *
+     * @param newSeed новое зерно
+     * @return параметры, отличающиеся только зерном
+     */
+    public InputParameters withSeed(long newSeed) {
+        return new InputParameters(lineCount, circleCount, rectangleCount,
+                triangleCount, parabolaCount, trapezoidCount,
+                minX, maxX, minY, maxY, density, gridStep, newSeed, distribution);
+    }
+
+    /**
+     * Проверяет, что параметры задают те же фигуры, что и другие:
+     * совпадают все поля, кроме шага сетки.
+     *
+     * @param other другие параметры
+     * @return {@code true}, если сцены отличаются не больше чем сеткой
+     */
+    public boolean sameShapesAs(InputParameters other) {
+        return lineCount == other.lineCount && circleCount == other.circleCount
+                && rectangleCount == other.rectangleCount && triangleCount == other.triangleCount
+                && parabolaCount == other.parabolaCount && trapezoidCount == other.trapezoidCount
+                && Double.compare(minX, other.minX) == 0 && Double.compare(maxX, other.maxX) == 0
+                && Double.compare(minY, other.minY) == 0 && Double.compare(maxY, other.maxY) == 0
+                && Double.compare(density, other.density) == 0 && seed == other.seed
+                && Objects.equals(distribution, other.distribution);
+    }
+
+    /**
+     * Параметры равны, если совпадают все поля, включая зерно и шаг сетки:
+     * такие параметры задают один и тот же рисунок.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof InputParameters)) {
+            return false;
+        }
+        InputParameters p = (InputParameters) o;
+        return sameShapesAs(p) && Double.compare(gridStep, p.gridStep) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lineCount, circleCount, rectangleCount, triangleCount, parabolaCount,
+                trapezoidCount, minX, maxX, minY, maxY, density, gridStep, seed, distribution);
+    }
+
+    /** @return количество линий */
+    public int getLineCount()      { return lineCount; }
+    /** @return количество окружностей */
+    public int getCircleCount()    { return circleCount; }
+    /** @return количество прямоугольников */
+    public int getRectangleCount() { return rectangleCount; }
+    /** @return количество треугольников */
+    public int getTriangleCount()  { return triangleCount; }
+    /** @return количество парабол */
+    public int getParabolaCount()  { return parabolaCount; }
+    /** @return количество трапеций */
+    public int getTrapezoidCount() { return trapezoidCount; }
+
+    /** @return минимальное значение X */
+    public double getMinX() { return minX; }
+    /** @return максимальное значение X */
+    public double getMaxX() { return maxX; }
+    /** @return минимальное значение Y */
+    public double getMinY() { return minY; }
+    /** @return максимальное значение Y */
+    public double getMaxY() { return maxY; }
+
+    /** @return параметр кучности */
+    public double getDensity()  { return density; }
+    /** @return шаг координатной сетки */
+    public double getGridStep() { return gridStep; }
+    /** @return зерно генератора случайных чисел */
+    public long getSeed()       { return seed; }
+    /** @return распределение положений фигур */
+    public String getDistribution() { return distribution; }
+}
@@ -0,0 +1,104 @@
+package org.example.shapes;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configuration;
+import org.apache.logging.log4j.core.config.ConfigurationFactory;
+import org.apache.logging.log4j.core.config.ConfigurationSource;
+import org.apache.logging.log4j.core.config.builder.api.AppenderComponentBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.api.LayoutComponentBuilder;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+
+import java.net.URI;
+
+/**
+ * Конфигурация log4j2, собранная в коде, вместо файла конфигурации.
+ * <p>
+ * При запуске log4j2 не ищет и не разбирает файл конфигурации, а плагины находит
+ * только по готовому списку {@code Log4j2Plugins.dat}, собранному при компиляции
+ * log4j-core, без сканирования пакетов. Это сокращает запуск коротких пакетных
+ * запусков и делает набор загружаемых классов одинаковым от запуска к запуску,
+ * что нужно для архива AppCDS (задача {@code cdsArchive} в build.gradle).
+ * <p>
+ * Фабрика подключается свойством {@code log4j2.configurationFactory}
+ * в {@code log4j2.component.properties}. Файл, явно заданный свойством
+ * {@code -Dlog4j2.configurationFile}, по-прежнему читается обычными фабриками log4j2.
+ * <p>
+ * Конфигурация: все логгеры асинхронные (см. {@code log4j2.component.properties}),
+ * поэтому расположение вызова не вычисляется, а раскладки не создают мусора: дата
+ * в одном из готовых форматов log4j, остальные преобразователи PatternLayout
+ * работают без выделения памяти. Файл журнала с ротацией по размеру и по дням
+ * выключен по умолчанию и включается, например, {@code -Dlog.file.level=info};
+ * каталог задается {@code -Dlog.dir} и создается при запуске, а файл — только
+ * при первой записи.
+ */
+public final class LoggingConfigurationFactory extends ConfigurationFactory {
+
+    /** Имя конфигурации. */
+    static final String NAME = "KursovayaLogging";
+    /** Подходит для любого типа файла конфигурации. */
+    private static final String[] ALL_TYPES = {"*"};
+
+    @Override
+    protected String[] getSupportedTypes() {
+        return ALL_TYPES;
+    }
+
+    /**
+     * Собирает конфигурацию, если файл конфигурации не задан явно.
+     */
+    @Override
+    public Configuration getConfiguration(LoggerContext loggerContext, String name, URI configLocation) {
+        return configLocation == null ? build() : null;
+    }
+
+    /**
+     * Явно заданные файлы конфигурации оставляются обычным фабрикам log4j2.
+     *
+     * @return {@code null}
+     */
+    @Override
+    public Configuration getConfiguration(LoggerContext loggerContext, ConfigurationSource source) {
+        return null;
+    }
+
+    /**
+     * Собирает конфигурацию: консоль для всех сообщений INFO и выше
+     * и необязательный файл журнала.
+     */
+    static Configuration build() {
+        ConfigurationBuilder<BuiltConfiguration> builder =
+                ConfigurationBuilderFactory.newConfigurationBuilder();
+        builder.setConfigurationName(NAME);
+        builder.setStatusLevel(Level.WARN);
+
+        LayoutComponentBuilder consoleLayout = builder.newLayout("PatternLayout")
+                .addAttribute("pattern", "[%-5level] %d{ABSOLUTE} %c{1} - %msg%n");
+        builder.add(builder.newAppender("STDOUT", "Console").add(consoleLayout));
+
+        // ${sys:...} подставляются при запуске, как и в файле конфигурации
+        AppenderComponentBuilder file = builder.newAppender("FILE", "RollingFile")
+                .addAttribute("fileName", "${sys:log.dir:-logs}/shapes.log")
+                .addAttribute("filePattern", "${sys:log.dir:-logs}/shapes-%d{yyyy-MM-dd}-%i.log.gz")
+                .addAttribute("createOnDemand", true)
+                .addAttribute("bufferedIO", true)
+                .addAttribute("immediateFlush", false)
+                .add(builder.newLayout("PatternLayout")
+                        .addAttribute("pattern", "%d{DEFAULT} [%-5level] [%t] %c{1} - %msg%n"))
+                .addComponent(builder.newComponent("Policies")
+                        .addComponent(builder.newComponent("TimeBasedTriggeringPolicy"))
+                        .addComponent(builder.newComponent("SizeBasedTriggeringPolicy")
+                                .addAttribute("size", "10 MB")))
+                .addComponent(builder.newComponent("DefaultRolloverStrategy")
+                        .addAttribute("max", "10"));
+        builder.add(file);
+
+        builder.add(builder.newRootLogger(Level.INFO)
+                .add(builder.newAppenderRef("STDOUT"))
+                .add(builder.newAppenderRef("FILE")
+                        .addAttribute("level", "${sys:log.file.level:-off}")));
+        return builder.build();
+    }
+}
@@ -0,0 +1,635 @@
+package org.example.shapes;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.swing.*;
+import javax.swing.border.TitledBorder;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Главный класс приложения генерации случайного рисунка.
+ * Создает главное окно, размещает элементы управления и запускает генерацию фигур.
+ */
+public class Main {
+
+    /** Логгер приложения для записи служебных сообщений. */
+    private static final Logger LOGGER = LogManager.getLogger(Main.class);
+
+    /** Текущая фоновая генерация; используется только в потоке обработки событий. */
+    private static GenerationWorker currentWorker;
+    /** Параметры рисунка, показанного на панели; {@code null}, если рисунка нет. */
+    private static InputParameters currentParameters;
+    /**
+     * Общий генератор с кэшем блоков фигур: при повторной генерации с тем же зерном
+     * заново генерируются только типы фигур с измененными параметрами.
+     */
+    private static final RandomShapeGenerator GENERATOR = new RandomShapeGenerator();
+    static {
+        GENERATOR.setPool(ForkJoinPool.commonPool());
+        GENERATOR.setCache(new BlockCache(Runtime.getRuntime().maxMemory() / 4));
+    }
+    /** Изображение для распределения по маске; {@code null}, пока не выбрано. */
+    private static File maskFile;
+
+    /** Имена распределений положений в порядке пунктов списка в окне. */
+    private static final String[] DISTRIBUTIONS = {
+            UniformDistribution.NAME, GaussianDistribution.NAME, PoissonDiskDistribution.NAME,
+            ClusteredDistribution.NAME, ImageMaskDistribution.NAME
+    };
+
+    /**
+     * Точка входа в приложение.
+     */
+    public static void main(String[] args) {
+        System.out.println("START MAIN");
+        LOGGER.info("Application started");
+        RenderMetrics.register();
+        RenderMetrics.get().startLogging(Long.getLong(RenderMetrics.LOG_PERIOD_PROPERTY,
+                RenderMetrics.DEFAULT_LOG_PERIOD));
+        SwingUtilities.invokeLater(Main::createAndShowGui);
+    }
+
+    /**
+     * Создает и настраивает главное окно приложения.
+     * Формирует панели ввода параметров, область рисования и статусную строку.
+     */
+    private static void createAndShowGui() {
+        JFrame frame = new JFrame("Генерация случайного рисунка");
+        frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+
+        DrawPanel drawPanel = new DrawPanel();
+
+        // количество символов в текстовых полях
+        int fieldColumns = 5;
+
+        // ---------- блок количества фигур ----------
+        JPanel figuresPanel = new JPanel(new GridLayout(0, 2, 5, 5));
+        figuresPanel.setBorder(new TitledBorder("Количество фигур"));
+
+        JTextField tfLines      = new JTextField("5", fieldColumns);
+        JTextField tfCircles    = new JTextField("5", fieldColumns);
+        JTextField tfRects      = new JTextField("5", fieldColumns);
+        JTextField tfTriangles  = new JTextField("5", fieldColumns);
+        JTextField tfParabolas  = new JTextField("5", fieldColumns);
+        JTextField tfTrapezoids = new JTextField("5", fieldColumns);
+
+        figuresPanel.add(new JLabel("Линии:"));
+        figuresPanel.add(tfLines);
+        figuresPanel.add(new JLabel("Окружности:"));
+        figuresPanel.add(tfCircles);
+        figuresPanel.add(new JLabel("Прямоугольники:"));
+        figuresPanel.add(tfRects);
+        figuresPanel.add(new JLabel("Треугольники:"));
+        figuresPanel.add(tfTriangles);
+        figuresPanel.add(new JLabel("Параболы:"));
+        figuresPanel.add(tfParabolas);
+        figuresPanel.add(new JLabel("Трапеции:"));
+        figuresPanel.add(tfTrapezoids);
+
+        // ---------- блок области координат ----------
+        JPanel areaPanel = new JPanel(new GridLayout(0, 2, 5, 5));
+        areaPanel.setBorder(new TitledBorder("Область координат и сетка"));
+
+        JTextField tfMinX     = new JTextField("500", fieldColumns);
+        JTextField tfMaxX     = new JTextField("1000", fieldColumns);
+        JTextField tfMinY     = new JTextField("0", fieldColumns);
+        JTextField tfMaxY     = new JTextField("500", fieldColumns);
+        JTextField tfDensity  = new JTextField("0", fieldColumns);
+        JTextField tfGridStep = new JTextField("25", fieldColumns);
+        JTextField tfSeed     = new JTextField("", fieldColumns);
+
+        tfDensity.setToolTipText("0..1: 0 — равномерно, 1 — больше фигур в центре");
+        tfGridStep.setToolTipText("Шаг координатной сетки, 0 — без сетки");
+        tfSeed.setToolTipText("Зерно генерации для повтора рисунка, пусто — случайное");
+        JComboBox<String> cbDistribution = new JComboBox<>(new String[]{
+                "Равномерное (прежнее)", "Гауссово", "Пуассоновские диски", "Кластеры",
+                "Маска из изображения"
+        });
+        cbDistribution.setToolTipText("Как фигуры располагаются в области");
+        JButton btnMask = new JButton("Выбрать...");
+        btnMask.setToolTipText("Изображение маски: чем темнее пиксель, тем больше фигур");
+        btnMask.setEnabled(false);
+
+        areaPanel.add(new JLabel("min X:"));
+        areaPanel.add(tfMinX);
+        areaPanel.add(new JLabel("max X:"));
+        areaPanel.add(tfMaxX);
+        areaPanel.add(new JLabel("min Y:"));
+        areaPanel.add(tfMinY);
+        areaPanel.add(new JLabel("max Y:"));
+        areaPanel.add(tfMaxY);
+        areaPanel.add(new JLabel("Кучность (0..1):"));
+        areaPanel.add(tfDensity);
+        areaPanel.add(new JLabel("Шаг сетки:"));
+        areaPanel.add(tfGridStep);
+        areaPanel.add(new JLabel("Зерно:"));
+        areaPanel.add(tfSeed);
+        areaPanel.add(new JLabel("Распределение:"));
+        areaPanel.add(cbDistribution);
+        areaPanel.add(new JLabel("Маска:"));
+        areaPanel.add(btnMask);
+
+        // ---------- кнопки ----------
+        JButton btnGenerate = new JButton("Сгенерировать");
+        JButton btnClear    = new JButton("Очистить");
+        JButton btnCancel   = new JButton("Отмена");
+        JButton btnSave     = new JButton("Сохранить...");
+        JButton btnOpen     = new JButton("Открыть...");
+        JButton btnExport   = new JButton("Экспорт SVG...");
+        btnExport.setToolTipText("Векторный рисунок; файл .svgz сжимается");
+        JButton btnResetView = new JButton("Масштаб 1:1");
+        btnResetView.setToolTipText("Колесо мыши — масштаб, перетаскивание — сдвиг");
+        JCheckBox cbBatching = new JCheckBox("Группировать по цветам");
+        cbBatching.setToolTipText("Меньше элементов в SVG; рисование обычно не ускоряет, цвета огрубляются, "
+                + "порядок наложения фигур не сохраняется");
+        JCheckBox cbStream = new JCheckBox("Без хранения фигур");
+        cbStream.setToolTipText("Для очень больших сцен: фигуры сразу рисуются в изображение "
+                + "и не хранятся, поэтому при увеличении видны пиксели, а сохранить сцену нельзя");
+        btnCancel.setEnabled(false);
+
+        JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonsPanel.add(cbStream);
+        buttonsPanel.add(cbBatching);
+        buttonsPanel.add(btnResetView);
+        buttonsPanel.add(btnExport);
+        buttonsPanel.add(btnOpen);
+        buttonsPanel.add(btnSave);
+        buttonsPanel.add(btnClear);
+        buttonsPanel.add(btnCancel);
+        buttonsPanel.add(btnGenerate);
+
+        // ---------- центрируем блок настроек ----------
+        JPanel innerTop = new JPanel(new GridLayout(1, 2, 20, 0));
+        innerTop.add(figuresPanel);
+        innerTop.add(areaPanel);
+
+        JPanel topPanel = new JPanel(new BorderLayout(10, 10));
+        topPanel.add(innerTop, BorderLayout.CENTER);
+        topPanel.add(buttonsPanel, BorderLayout.SOUTH);
+
+        JPanel topWrapper = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
+        topWrapper.add(topPanel);
+
+        // ---------- статусная строка ----------
+        JLabel statusLabel = new JLabel("Готово.");
+        JPanel statusPanel = new JPanel(new BorderLayout());
+        statusPanel.setBorder(BorderFactory.createEmptyBorder(3, 5, 3, 5));
+        statusPanel.add(statusLabel, BorderLayout.WEST);
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        statusPanel.add(progressBar, BorderLayout.EAST);
+        // метрики отрисовки и генерации обновляются раз в секунду
+        JLabel metricsLabel = new JLabel();
+        metricsLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        metricsLabel.setForeground(Color.DARK_GRAY);
+        statusPanel.add(metricsLabel, BorderLayout.CENTER);
+        new Timer(1000, e -> metricsLabel.setText(metricsText(RenderMetrics.get()))).start();
+
+        // ---------- раскладка окна ----------
+        frame.setLayout(new BorderLayout(10, 10));
+        frame.add(topWrapper, BorderLayout.NORTH);
+        frame.add(new JScrollPane(drawPanel), BorderLayout.CENTER);
+        frame.add(statusPanel, BorderLayout.SOUTH);
+
+        // ---------- обработчики кнопок ----------
+        btnGenerate.addActionListener(e -> {
+            try {
+                int lineCount      = Integer.parseInt(tfLines.getText());
+                int circleCount    = Integer.parseInt(tfCircles.getText());
+                int rectCount      = Integer.parseInt(tfRects.getText());
+                int triangleCount  = Integer.parseInt(tfTriangles.getText());
+                int parabolaCount  = Integer.parseInt(tfParabolas.getText());
+                int trapezoidCount = Integer.parseInt(tfTrapezoids.getText());
+
+                double minX    = Double.parseDouble(tfMinX.getText());
+                double maxX    = Double.parseDouble(tfMaxX.getText());
+                double minY    = Double.parseDouble(tfMinY.getText());
+                double maxY    = Double.parseDouble(tfMaxY.getText());
+                double density = Double.parseDouble(tfDensity.getText());
+                double grid    = Double.parseDouble(tfGridStep.getText());
+                String seedText = tfSeed.getText().trim();
+                long seed = seedText.isEmpty()
+                        ? new SplittableRandom().nextLong()
+                        : Long.parseLong(seedText);
+
+                // логическая валидация
+                if (minX >= maxX || minY >= maxY) {
+                    JOptionPane.showMessageDialog(frame,
+                            "Минимальные значения координат должны быть меньше максимальных.",
+                            "Ошибка параметров", JOptionPane.ERROR_MESSAGE);
+                    LOGGER.warn("Invalid bounds: minX={}, maxX={}, minY={}, maxY={}",
+                            minX, maxX, minY, maxY);
+                    return;
+                }
+
+                if (density < 0 || density > 1) {
+                    JOptionPane.showMessageDialog(frame,
+                            "Параметр \"Кучность\" должен быть в диапазоне от 0 до 1.",
+                            "Ошибка параметров", JOptionPane.ERROR_MESSAGE);
+                    LOGGER.warn("Invalid density value: {}", density);
+                    return;
+                }
+
+                if (grid < 0) {
+                    JOptionPane.showMessageDialog(frame,
+                            "Шаг сетки не может быть отрицательным.",
+                            "Ошибка параметров", JOptionPane.ERROR_MESSAGE);
+                    LOGGER.warn("Invalid grid step: {}", grid);
+                    return;
+                }
+
+                String distribution = DISTRIBUTIONS[cbDistribution.getSelectedIndex()];
+                if (distribution.equals(ImageMaskDistribution.NAME)) {
+                    if (maskFile == null) {
+                        JOptionPane.showMessageDialog(frame,
+                                "Выберите изображение маски.",
+                                "Ошибка параметров", JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                    distribution = ImageMaskDistribution.NAME + ":" + maskFile.getPath();
+                }
+
+                InputParameters params = new InputParameters(
+                        lineCount,
+                        circleCount,
+                        rectCount,
+                        triangleCount,
+                        parabolaCount,
+                        trapezoidCount,
+                        minX,
+                        maxX,
+                        minY,
+                        maxY,
+                        density,
+                        grid,
+                        seed,
+                        distribution
+                );
+
+                // сменился только шаг сетки: фигуры законченной генерации остаются,
+                // перерисовывается сетка
+                if (currentParameters != null && params.sameShapesAs(currentParameters)
+                        && currentWorker != null && currentWorker.isComplete()
+                        && currentWorker.stream == cbStream.isSelected()) {
+                    drawPanel.setParameters(minX, maxX, minY, maxY, grid);
+                    currentParameters = params;
+                    LOGGER.info("Grid step changed to {}", grid);
+                    statusLabel.setText("Шаг сетки изменен.");
+                    return;
+                }
+
+                // новая генерация отменяет предыдущую, а не ждет ее окончания
+                if (currentWorker != null && !currentWorker.isDone()) {
+                    currentWorker.cancel(true);
+                    LOGGER.info("Previous generation cancelled");
+                }
+
+                LOGGER.info("Drawing generation started");
+                drawPanel.setParameters(minX, maxX, minY, maxY, grid);
+                drawPanel.setScenes(java.util.Collections.emptyList());
+                progressBar.setValue(0);
+                progressBar.setVisible(true);
+                btnCancel.setEnabled(true);
+
+                currentParameters = params;
+                GenerationWorker worker = new GenerationWorker(params, cbStream.isSelected(),
+                        frame, drawPanel, statusLabel);
+                worker.addPropertyChangeListener(evt -> {
+                    if ("progress".equals(evt.getPropertyName())) {
+                        progressBar.setValue((Integer) evt.getNewValue());
+                        statusLabel.setText("Генерация: " + evt.getNewValue() + "%");
+                    } else if (worker.isDone() && worker == currentWorker) {
+                        progressBar.setVisible(false);
+                        btnCancel.setEnabled(false);
+                    }
+                });
+                currentWorker = worker;
+                worker.execute();
+            } catch (NumberFormatException ex) {
+                LOGGER.error("Number input error", ex);
+                JOptionPane.showMessageDialog(frame,
+                        "Ошибка ввода чисел: " + ex.getMessage(),
+                        "Ошибка", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        btnCancel.addActionListener(e -> {
+            if (currentWorker != null) {
+                currentWorker.cancel(true);
+                LOGGER.info("Generation cancelled by user");
+            }
+        });
+
+        btnClear.addActionListener(e -> {
+            if (currentWorker != null) {
+                currentWorker.cancel(true);
+            }
+            drawPanel.setShapes(java.util.Collections.emptyList());
+            currentParameters = null;
+            LOGGER.info("Drawing cleared by user");
+            statusLabel.setText("Рисунок очищен.");
+        });
+
+        btnResetView.addActionListener(e -> drawPanel.resetView());
+        cbBatching.addActionListener(e -> drawPanel.setColorBatching(cbBatching.isSelected()));
+
+        JFileChooser fileChooser = new JFileChooser();
+
+        btnSave.addActionListener(e -> {
+            if (currentParameters == null || (currentWorker != null && !currentWorker.isDone())) {
+                JOptionPane.showMessageDialog(frame,
+                        "Нет готового рисунка для сохранения.",
+                        "Сохранение", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            if (currentWorker != null && currentWorker.stream) {
+                JOptionPane.showMessageDialog(frame,
+                        "Фигуры рисунка не хранились; его можно повторить по зерну "
+                                + currentParameters.getSeed() + ".",
+                        "Сохранение", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            if (fileChooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            File file = fileChooser.getSelectedFile();
+            try {
+                SceneFile.save(file.toPath(), currentParameters, drawPanel.getScenes());
+                LOGGER.info("Scene saved to {}", file);
+                statusLabel.setText("Рисунок сохранен: " + file.getName());
+            } catch (IOException ex) {
+                LOGGER.error("Cannot save scene to {}", file, ex);
+                JOptionPane.showMessageDialog(frame,
+                        "Ошибка сохранения: " + ex.getMessage(),
+                        "Ошибка", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        JFileChooser exportChooser = new JFileChooser();
+        exportChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+                "SVG", "svg", "svgz"));
+        btnExport.addActionListener(e -> {
+            InputParameters params = currentParameters;
+            if (params == null) {
+                JOptionPane.showMessageDialog(frame,
+                        "Нет рисунка для экспорта.",
+                        "Экспорт", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            if (exportChooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            File file = exportChooser.getSelectedFile();
+            boolean colorBatching = cbBatching.isSelected();
+            statusLabel.setText("Экспорт: " + file.getName() + "...");
+            btnExport.setEnabled(false);
+            // сцена заново генерируется по параметрам и пишется блоками, не загружая панель
+            new SwingWorker<Void, Void>() {
+                @Override
+                protected Void doInBackground() throws IOException {
+                    RandomShapeGenerator generator = new RandomShapeGenerator();
+                    generator.setPool(ForkJoinPool.commonPool());
+                    SvgExporter exporter = new SvgExporter(generator);
+                    exporter.setColorBatching(colorBatching);
+                    exporter.export(params, file.toPath());
+                    return null;
+                }
+
+                @Override
+                protected void done() {
+                    btnExport.setEnabled(true);
+                    try {
+                        get();
+                        LOGGER.info("Scene exported to {}", file);
+                        statusLabel.setText("Рисунок экспортирован: " + file.getName());
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    } catch (ExecutionException ex) {
+                        LOGGER.error("Cannot export scene to {}", file, ex.getCause());
+                        statusLabel.setText("Ошибка экспорта.");
+                        JOptionPane.showMessageDialog(frame,
+                                "Ошибка экспорта: " + ex.getCause().getMessage(),
+                                "Ошибка", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }.execute();
+        });
+
+        cbDistribution.addActionListener(e -> btnMask.setEnabled(
+                DISTRIBUTIONS[cbDistribution.getSelectedIndex()].equals(ImageMaskDistribution.NAME)));
+
+        JFileChooser maskChooser = new JFileChooser();
+        maskChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+                "Изображения", javax.imageio.ImageIO.getReaderFileSuffixes()));
+        btnMask.addActionListener(e -> {
+            if (maskChooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            maskFile = maskChooser.getSelectedFile();
+            btnMask.setText(maskFile.getName());
+            btnMask.setToolTipText(maskFile.getPath());
+        });
+
+        btnOpen.addActionListener(e -> {
+            if (fileChooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            File file = fileChooser.getSelectedFile();
+            try {
+                SceneFile loaded = SceneFile.load(file.toPath());
+                if (currentWorker != null) {
+                    currentWorker.cancel(true);
+                }
+                InputParameters p = loaded.getParameters();
+                tfLines.setText(String.valueOf(p.getLineCount()));
+                tfCircles.setText(String.valueOf(p.getCircleCount()));
+                tfRects.setText(String.valueOf(p.getRectangleCount()));
+                tfTriangles.setText(String.valueOf(p.getTriangleCount()));
+                tfParabolas.setText(String.valueOf(p.getParabolaCount()));
+                tfTrapezoids.setText(String.valueOf(p.getTrapezoidCount()));
+                tfMinX.setText(String.valueOf(p.getMinX()));
+                tfMaxX.setText(String.valueOf(p.getMaxX()));
+                tfMinY.setText(String.valueOf(p.getMinY()));
+                tfMaxY.setText(String.valueOf(p.getMaxY()));
+                tfDensity.setText(String.valueOf(p.getDensity()));
+                tfGridStep.setText(String.valueOf(p.getGridStep()));
+                tfSeed.setText(String.valueOf(p.getSeed()));
+                String distribution = p.getDistribution();
+                int colon = distribution.indexOf(':');
+                String name = colon < 0 ? distribution : distribution.substring(0, colon);
+                if (colon >= 0 && name.equals(ImageMaskDistribution.NAME)) {
+                    maskFile = new File(distribution.substring(colon + 1));
+                    btnMask.setText(maskFile.getName());
+                }
+                int index = java.util.Arrays.asList(DISTRIBUTIONS).indexOf(name);
+                if (index >= 0) {
+                    cbDistribution.setSelectedIndex(index);
+                }
+
+                drawPanel.setParameters(p.getMinX(), p.getMaxX(), p.getMinY(), p.getMaxY(),
+                        p.getGridStep());
+                drawPanel.setScenes(loaded.getScenes());
+                currentParameters = p;
+                LOGGER.info("Scene loaded from {}", file);
+                statusLabel.setText("Рисунок загружен: " + file.getName()
+                        + ", зерно: " + p.getSeed());
+            } catch (IOException ex) {
+                LOGGER.error("Cannot load scene from {}", file, ex);
+                JOptionPane.showMessageDialog(frame,
+                        "Ошибка загрузки: " + ex.getMessage(),
+                        "Ошибка", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        frame.pack();
+        frame.setExtendedState(JFrame.MAXIMIZED_BOTH);
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+        LOGGER.info("Window shown");
+    }
+
+    /**
+     * Формирует строку метрик для статусной строки.
+     */
+    private static String metricsText(RenderMetrics m) {
+        long sceneBytes = 0;
+        for (long bytes : m.getSceneHeapBytes()) {
+            sceneBytes += bytes;
+        }
+        return String.format("Отрисовка: %.1f мс (p99 до %d мс), генерация: %.0f тыс. фигур/с, "
+                        + "объединено перерисовок: %d, кэш блоков: %d/%d, сцены: %d МБ, куча: %d МБ",
+                m.getLastPaintMillis(), m.getPaintP99Millis(), m.getTotalShapesPerSecond() / 1000,
+                m.getCoalescedRepaints(), m.getBlockCacheHits(),
+                m.getBlockCacheHits() + m.getBlockCacheMisses(),
+                sceneBytes >> 20, m.getHeapUsedBytes() >> 20);
+    }
+
+    /**
+     * Фоновая генерация рисунка.
+     * Фигуры генерируются порциями вне потока обработки событий; готовые порции
+     * сразу добавляются на панель, а ход генерации отображается в статусной строке.
+     * Без хранения фигур порции рисуются в изображение {@link RasterLayer} на панели,
+     * которое обновляется на экране не чаще раза в {@link #REFRESH_INTERVAL_NANOS}.
+     */
+    private static final class GenerationWorker extends SwingWorker<Boolean, Void> {
+
+        /** Наименьший интервал между обновлениями изображения на экране, в наносекундах. */
+        private static final long REFRESH_INTERVAL_NANOS = 250_000_000L;
+
+        private final InputParameters params;
+        /** Признак генерации без хранения фигур. */
+        final boolean stream;
+        private final JFrame frame;
+        private final DrawPanel drawPanel;
+        private final JLabel statusLabel;
+        /** Эпоха панели на момент запуска; порции принимаются, пока она не сменилась. */
+        private final long epoch;
+        /** Количество фигур, уже добавленных на панель. */
+        private volatile int shapeCount;
+        /** Признак успешного окончания: все фигуры на панели. Изменяется в потоке EDT. */
+        private boolean complete;
+
+        GenerationWorker(InputParameters params, boolean stream, JFrame frame,
+                         DrawPanel drawPanel, JLabel statusLabel) {
+            this.params = params;
+            this.stream = stream;
+            this.frame = frame;
+            this.drawPanel = drawPanel;
+            this.statusLabel = statusLabel;
+            this.epoch = drawPanel.getEpoch();
+        }
+
+        @Override
+        protected Boolean doInBackground() {
+            if (stream) {
+                return generateStream(GENERATOR);
+            }
+            return GENERATOR.generateBatches(params, (batch, generated, total) -> {
+                // панель принимает порции из любого потока; после очистки панели
+                // или запуска новой генерации порции этой генерации отбрасываются
+                if (isCancelled() || !drawPanel.appendScene(batch, epoch)) {
+                    return false;
+                }
+                shapeCount = generated;
+                setProgress(total == 0 ? 100 : (int) (100L * generated / total));
+                return true;
+            });
+        }
+
+        /**
+         * Рисует фигуры в изображение на панели, не сохраняя их. Сглаживание
+         * отключается в тех же плотных сценах, что и на панели.
+         */
+        private boolean generateStream(RandomShapeGenerator generator) {
+            RasterLayer layer = new RasterLayer(new GridLayer(params).getArea());
+            ShapeStore scene = new ShapeStore();
+            scene.addCustomShape(layer);
+            if (!drawPanel.appendScene(scene, epoch)) {
+                return false;
+            }
+            BufferedImage image = layer.getImage();
+            long total = (long) params.getLineCount() + params.getCircleCount()
+                    + params.getRectangleCount() + params.getTriangleCount()
+                    + params.getParabolaCount() + params.getTrapezoidCount();
+            StreamRenderer renderer = new StreamRenderer(generator, ForkJoinPool.commonPool(),
+                    ForkJoinPool.commonPool().getParallelism());
+            renderer.setAntialiasing(total <= DrawPanel.DEFAULT_ANTIALIASING_THRESHOLD
+                    * image.getWidth() * image.getHeight());
+            long[] refreshed = {System.nanoTime()};
+            boolean complete = renderer.render(params, image, layer.toImage(), null, null,
+                    (batch, generated, count) -> {
+                        if (isCancelled()) {
+                            return false;
+                        }
+                        shapeCount = generated;
+                        setProgress(count == 0 ? 100 : (int) (100L * generated / count));
+                        long now = System.nanoTime();
+                        if (now - refreshed[0] < REFRESH_INTERVAL_NANOS) {
+                            return true;
+                        }
+                        refreshed[0] = now;
+                        return drawPanel.scenesChanged(epoch);
+                    });
+            drawPanel.scenesChanged(epoch);
+            return complete;
+        }
+
+        /**
+         * @return {@code true}, если генерация закончилась без ошибки и отмены
+         * и все фигуры добавлены на панель; вызывается в потоке EDT
+         */
+        boolean isComplete() {
+            return complete;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                statusLabel.setText("Генерация отменена.");
+                return;
+            }
+            try {
+                complete = get();
+                LOGGER.info("Total shapes created: {}", shapeCount);
+                statusLabel.setText("Сгенерировано фигур: " + shapeCount
+                        + ", зерно: " + params.getSeed());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                LOGGER.error("Generation failed", ex.getCause());
+                statusLabel.setText("Ошибка генерации.");
+                JOptionPane.showMessageDialog(frame,
+                        "Ошибка генерации: " + ex.getCause(),
+                        "Ошибка", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+}
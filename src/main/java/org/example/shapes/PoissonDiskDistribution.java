@@ -0,0 +1,249 @@
+package org.example.shapes;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Распределение «голубого шума»: точки равномерно покрывают область,
+ * но никакие две не ближе радиуса r друг к другу.
+ * <p>
+ * Точки строятся алгоритмом Бридсона (R. Bridson, «Fast Poisson Disk Sampling
+ * in Arbitrary Dimensions», 2007) за время O(n): область покрывается сеткой
+ * с ячейкой r/√2, в каждую ячейку попадает не больше одной точки, поэтому
+ * проверка кандидата смотрит лишь на соседние ячейки, а не на все точки.
+ * Новые точки ищутся в кольце [r, 2r] вокруг точек из списка активных;
+ * точка, вокруг которой {@link #CANDIDATES} кандидатов подряд не подошли,
+ * из списка удаляется.
+ * <p>
+ * Радиус подбирается по количеству точек так, чтобы их заведомо хватило;
+ * из построенного множества случайно выбираются нужные (подмножество сохраняет
+ * минимальное расстояние). Кучность не учитывается.
+ * <p>
+ * Точки строятся в области опорных точек типа фигур (см.
+ * {@link PositionDistribution#prepare(InputParameters, Rectangle2D, int, RandomGenerator)})
+ * и возвращаются как есть, поэтому минимальное расстояние сохраняется между опорными
+ * точками фигур разного размера. Для парабол область — отрезок, и точки
+ * расставляются по нему с тем же правилом. Если область пуста (фигуры шире области),
+ * или выборку готовят без области, точки строятся во всей области и переносятся
+ * в прямоугольник каждой фигуры, без гарантии расстояния.
+ */
+final class PoissonDiskDistribution implements PositionDistribution {
+
+    /** Имя распределения. */
+    static final String NAME = "poisson";
+    /** Количество кандидатов вокруг активной точки. */
+    static final int CANDIDATES = 30;
+    /**
+     * Площадь на точку в долях r^2: алгоритм Бридсона дает около 0.6 точки на r^2,
+     * поэтому при r^2 = 0.5 * площадь / n точек получается с запасом около 20%.
+     */
+    private static final double AREA_PER_POINT = 0.5;
+    /**
+     * Длина на точку в долях r для отрезка: соседние точки отрезка отстоят на r..3r,
+     * в среднем около 1.5r, поэтому при r = 0.5 * длина / n точек тоже хватает с запасом.
+     */
+    private static final double LENGTH_PER_POINT = 0.5;
+    /** Во сколько раз уменьшается радиус, если точек не хватило. */
+    static final double RADIUS_SHRINK = 0.9;
+
+    static final PoissonDiskDistribution INSTANCE = new PoissonDiskDistribution();
+
+    private PoissonDiskDistribution() {
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Sampler prepare(InputParameters params, int count, RandomGenerator random) {
+        double width = params.getMaxX() - params.getMinX();
+        double height = params.getMaxY() - params.getMinY();
+        float[] unit = choose(width, height, count, random);
+        for (int i = 0; i < unit.length; i += 2) {
+            unit[i] /= width;
+            unit[i + 1] /= height;
+        }
+        return new UnitSampler() {
+            @Override
+            void unit(int index, RandomGenerator r, double[] out) {
+                out[0] = unit[2 * index];
+                out[1] = unit[2 * index + 1];
+            }
+        };
+    }
+
+    @Override
+    public Sampler prepare(InputParameters params, Rectangle2D anchors, int count,
+                           RandomGenerator random) {
+        if (anchors.getWidth() < 0 || anchors.getHeight() < 0) {
+            return prepare(params, count, random);
+        }
+        double x0 = anchors.getX();
+        double y0 = anchors.getY();
+        float[] points = choose(anchors.getWidth(), anchors.getHeight(), count, random);
+        return new Sampler() {
+            @Override
+            public void sample(int index, double minX, double maxX, double minY, double maxY,
+                               RandomGenerator r, double[] out) {
+                // точка уже внутри прямоугольника фигуры; прижатие — от ошибок округления
+                out[0] = Math.max(minX, Math.min(maxX, x0 + points[2 * index]));
+                out[1] = Math.max(minY, Math.min(maxY, y0 + points[2 * index + 1]));
+            }
+        };
+    }
+
+    /**
+     * Строит {@code count} точек в прямоугольнике [0, width] x [0, height],
+     * подбирая радиус по их количеству.
+     *
+     * @return координаты точек подряд: x0, y0, x1, y1, ...
+     */
+    static float[] choose(double width, double height, int count, RandomGenerator random) {
+        if (count <= 0) {
+            return new float[0];
+        }
+        double radius = radiusFor(width, height, count);
+        if (!(radius > 0)) {
+            // область вырождена в точку: расстояние соблюсти нельзя
+            return new float[2 * count];
+        }
+        float[] points = sample(width, height, radius, random);
+        while (points.length / 2 < count) {
+            radius *= RADIUS_SHRINK;
+            points = sample(width, height, radius, random);
+        }
+        // случайные count точек: частичная перестановка Фишера — Йетса
+        int n = points.length / 2;
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(n - i);
+            swap(points, 2 * i, 2 * j);
+            swap(points, 2 * i + 1, 2 * j + 1);
+        }
+        return Arrays.copyOf(points, 2 * count);
+    }
+
+    /**
+     * @return начальный радиус для {@code count} точек в прямоугольнике или на отрезке;
+     *         если точек не хватит, радиус уменьшается в {@value #RADIUS_SHRINK} раза
+     */
+    static double radiusFor(double width, double height, int count) {
+        return width > 0 && height > 0
+                ? Math.sqrt(AREA_PER_POINT * width * height / count)
+                : LENGTH_PER_POINT * Math.max(width, height) / count;
+    }
+
+    /**
+     * Строит множество точек в прямоугольнике [0, width] x [0, height]
+     * с попарным расстоянием не меньше {@code radius}. Прямоугольник нулевой
+     * ширины или высоты — отрезок: кандидаты ищутся вдоль него.
+     *
+     * @return координаты точек подряд: x0, y0, x1, y1, ...
+     */
+    static float[] sample(double width, double height, double radius, RandomGenerator random) {
+        double cell = radius / Math.sqrt(2);
+        int cols = Math.max(1, (int) Math.ceil(width / cell));
+        int rows = Math.max(1, (int) Math.ceil(height / cell));
+        if ((long) cols * rows > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many points for Poisson-disk sampling");
+        }
+        // номер точки в ячейке или -1
+        int[] grid = new int[cols * rows];
+        Arrays.fill(grid, -1);
+        float[] points = new float[1024];
+        int[] active = new int[512];
+        int count = 0;
+        int activeCount = 0;
+        double r2 = radius * radius;
+
+        double x0 = random.nextDouble() * width;
+        double y0 = random.nextDouble() * height;
+        points[0] = (float) x0;
+        points[1] = (float) y0;
+        grid[cellOf(y0, cell, rows) * cols + cellOf(x0, cell, cols)] = 0;
+        active[activeCount++] = count++;
+
+        while (activeCount > 0) {
+            int slot = random.nextInt(activeCount);
+            int p = active[slot];
+            double px = points[2 * p];
+            double py = points[2 * p + 1];
+            boolean placed = false;
+            for (int k = 0; k < CANDIDATES && !placed; k++) {
+                double x;
+                double y;
+                if (width > 0 && height > 0) {
+                    // равномерно по площади кольца [r, 2r]
+                    double angle = 2 * Math.PI * random.nextDouble();
+                    double distance = radius * Math.sqrt(1 + 3 * random.nextDouble());
+                    x = px + distance * Math.cos(angle);
+                    y = py + distance * Math.sin(angle);
+                } else {
+                    // на отрезке: равномерно по длине [r, 2r] в одну из сторон
+                    double distance = radius * (1 + random.nextDouble());
+                    if (random.nextBoolean()) {
+                        distance = -distance;
+                    }
+                    x = width > 0 ? px + distance : px;
+                    y = width > 0 ? py : py + distance;
+                }
+                if (x < 0 || y < 0 || x > width || y > height) {
+                    continue;
+                }
+                int gx = cellOf(x, cell, cols);
+                int gy = cellOf(y, cell, rows);
+                if (isFree(grid, cols, rows, gx, gy, x, y, r2, points)) {
+                    if (2 * count + 2 > points.length) {
+                        points = Arrays.copyOf(points, points.length * 2);
+                    }
+                    if (activeCount == active.length) {
+                        active = Arrays.copyOf(active, active.length * 2);
+                    }
+                    points[2 * count] = (float) x;
+                    points[2 * count + 1] = (float) y;
+                    grid[gy * cols + gx] = count;
+                    active[activeCount++] = count++;
+                    placed = true;
+                }
+            }
+            if (!placed) {
+                active[slot] = active[--activeCount];
+            }
+        }
+        return Arrays.copyOf(points, 2 * count);
+    }
+
+    /**
+     * Проверяет, что в ячейках вокруг (gx, gy) нет точек ближе радиуса к (x, y).
+     * Ячейка меньше радиуса, поэтому достаточно окрестности 5x5 ячеек.
+     */
+    private static boolean isFree(int[] grid, int cols, int rows, int gx, int gy,
+                                  double x, double y, double r2, float[] points) {
+        for (int row = Math.max(0, gy - 2); row <= Math.min(rows - 1, gy + 2); row++) {
+            for (int col = Math.max(0, gx - 2); col <= Math.min(cols - 1, gx + 2); col++) {
+                int q = grid[row * cols + col];
+                if (q >= 0) {
+                    double dx = points[2 * q] - x;
+                    double dy = points[2 * q + 1] - y;
+                    if (dx * dx + dy * dy < r2) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Ячейка сетки для координаты из [0, cells * cell]; правая граница — в последней ячейке. */
+    private static int cellOf(double v, double cell, int cells) {
+        return Math.min(cells - 1, (int) (v / cell));
+    }
+
+    private static void swap(float[] a, int i, int j) {
+        float t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+}
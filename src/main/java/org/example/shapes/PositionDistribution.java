@@ -0,0 +1,138 @@
+package org.example.shapes;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ServiceLoader;
+import java.util.random.RandomGenerator;
+
+/**
+ * Распределение положений фигур в области генерации.
+ * <p>
+ * Распределение задается в {@link InputParameters} строкой вида {@code имя} или
+ * {@code имя:аргумент} (см. {@link #forSpec(String)}). Встроенные распределения:
+ * <ul>
+ *   <li>{@code uniform} — прежняя модель: равномерное распределение, сжатое
+ *       к центру в зависимости от кучности ({@link UniformDistribution});</li>
+ *   <li>{@code gaussian} — нормальное распределение вокруг центра области
+ *       ({@link GaussianDistribution});</li>
+ *   <li>{@code poisson} — точки не ближе заданного расстояния друг к другу,
+ *       «голубой шум» ({@link PoissonDiskDistribution});</li>
+ *   <li>{@code clustered} — скопления вокруг случайных центров ({@link ClusteredDistribution});</li>
+ *   <li>{@code mask:файл} — плотность по яркости изображения: чем темнее пиксель,
+ *       тем больше фигур ({@link ImageMaskDistribution}).</li>
+ * </ul>
+ * Другие распределения подключаются через {@link ServiceLoader}: реализация
+ * указывается в файле {@code META-INF/services/org.example.shapes.PositionDistribution} и выбирается
+ * по имени {@link #getName()}.
+ * <p>
+ * Для каждого типа фигур сцены распределение готовит выборку {@link Sampler}
+ * до начала генерации, в одном потоке и с собственным потоком случайных чисел,
+ * поэтому сцена по-прежнему однозначно определяется параметрами. Сама выборка
+ * вызывается из блоков генерации параллельно и должна быть потокобезопасной.
+ */
+public interface PositionDistribution {
+
+    /** Имя распределения по умолчанию. */
+    String DEFAULT = "uniform";
+
+    /** @return имя распределения в параметрах генерации */
+    String getName();
+
+    /**
+     * Готовит выборку положений для одного типа фигур.
+     *
+     * @param params параметры генерации
+     * @param count  количество точек, которые будут запрошены (номера от 0 до count - 1)
+     * @param random поток случайных чисел для подготовки
+     * @return выборка положений
+     */
+    Sampler prepare(InputParameters params, int count, RandomGenerator random);
+
+    /**
+     * Готовит выборку положений для одного типа фигур, зная область опорных точек:
+     * прямоугольник, который лежит внутри прямоугольника {@link Sampler#sample}
+     * любой фигуры этого типа, каким бы ни был ее размер (для окружностей — область,
+     * сжатая на наибольший радиус). Распределение, которому важны расстояния между
+     * точками, может выбирать точки в этой области и возвращать их без пересчета
+     * в прямоугольник фигуры. Область может быть вырожденной (нулевой ширины
+     * у парабол, у которых выбирается только Y) или пустой, если фигуры не помещаются.
+     * <p>
+     * По умолчанию область не используется.
+     *
+     * @param params  параметры генерации
+     * @param anchors область опорных точек
+     * @param count   количество точек, которые будут запрошены
+     * @param random  поток случайных чисел для подготовки
+     * @return выборка положений
+     */
+    default Sampler prepare(InputParameters params, Rectangle2D anchors, int count,
+                            RandomGenerator random) {
+        return prepare(params, count, random);
+    }
+
+    /**
+     * Выборка положений одного типа фигур.
+     */
+    interface Sampler {
+        /**
+         * Выбирает точку в прямоугольнике. Прямоугольник зависит от размера фигуры
+         * (например, центр окружности не ближе радиуса к краю области).
+         *
+         * @param index  номер точки среди точек этого типа фигур
+         * @param minX   минимальное значение X
+         * @param maxX   максимальное значение X
+         * @param minY   минимальное значение Y
+         * @param maxY   максимальное значение Y
+         * @param random поток случайных чисел блока генерации
+         * @param out    массив, в который записываются X и Y точки
+         */
+        void sample(int index, double minX, double maxX, double minY, double maxY,
+                    RandomGenerator random, double[] out);
+
+        /**
+         * Выбирает только координату Y, например для фигур во всю ширину области.
+         *
+         * @param out рабочий массив из двух элементов
+         * @return координата Y
+         */
+        default double sampleY(int index, double minY, double maxY,
+                               RandomGenerator random, double[] out) {
+            sample(index, 0, 0, minY, maxY, random, out);
+            return out[1];
+        }
+    }
+
+    /**
+     * Возвращает распределение по строке из параметров генерации.
+     *
+     * @param spec имя распределения, для маски — {@code mask:путь к изображению}
+     * @return распределение
+     * @throws IllegalArgumentException если распределение неизвестно или аргумент неверен
+     */
+    static PositionDistribution forSpec(String spec) {
+        int colon = spec.indexOf(':');
+        String name = colon < 0 ? spec : spec.substring(0, colon);
+        String argument = colon < 0 ? null : spec.substring(colon + 1);
+        if (name.equals(ImageMaskDistribution.NAME)) {
+            if (argument == null || argument.isEmpty()) {
+                throw new IllegalArgumentException("Mask distribution needs an image: mask:<file>");
+            }
+            return new ImageMaskDistribution(argument);
+        }
+        if (argument != null) {
+            throw new IllegalArgumentException("Distribution " + name + " takes no argument");
+        }
+        switch (name) {
+            case UniformDistribution.NAME:     return UniformDistribution.INSTANCE;
+            case GaussianDistribution.NAME:    return GaussianDistribution.INSTANCE;
+            case PoissonDiskDistribution.NAME: return PoissonDiskDistribution.INSTANCE;
+            case ClusteredDistribution.NAME:   return ClusteredDistribution.INSTANCE;
+            default:
+                for (PositionDistribution d : ServiceLoader.load(PositionDistribution.class)) {
+                    if (d.getName().equals(name)) {
+                        return d;
+                    }
+                }
+                throw new IllegalArgumentException("Unknown position distribution: " + spec);
+        }
+    }
+}
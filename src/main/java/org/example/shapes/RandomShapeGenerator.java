@@ -0,0 +1,612 @@
+package org.example.shapes;
+
+import org.apache.logging.log4j.LogManager;   // библиотека log4j2: фабрика логгеров
+import org.apache.logging.log4j.Logger;       // интерфейс логгера log4j2
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.random.RandomGenerator;
+
+/**
+ * Генератор случайных фигур по заданным параметрам.
+ * Заполняет колоночные буферы сцены {@link ShapeStore} и передает сцену панели.
+ * <p>
+ * Результат генерации — чистая функция от {@link InputParameters} (включая зерно):
+ * фигуры каждого типа генерируются блоками по {@link #CHUNK_SIZE} штук,
+ * каждый блок получает собственный поток случайных чисел, отщепленный от зерна
+ * в фиксированном порядке, и пишет в заранее выделенный диапазон буфера.
+ * Поэтому при одинаковых параметрах результат побитно совпадает независимо от того,
+ * выполняется генерация последовательно или в пуле потоков любого размера.
+ * <p>
+ * Сцену можно не хранить целиком: {@link #generateStream(InputParameters, BatchConsumer)}
+ * отдает блоки по одному в переиспользуемых буферах (см. {@link StreamRenderer}).
+ * <p>
+ * Положения фигур выбираются распределением {@link PositionDistribution} из параметров.
+ * Выборка для каждого типа фигур готовится до запуска блоков из отдельного потока
+ * случайных чисел, поэтому потоки блоков и сцены с прежним распределением
+ * {@code uniform} не меняются.
+ * <p>
+ * Если задан кэш {@link BlockCache}, порционная генерация
+ * {@link #generateBatches(InputParameters, BatchConsumer)} берет из него
+ * фигуры тех типов, параметры которых не изменились, и генерирует только остальные.
+ */
+public class RandomShapeGenerator {
+
+    /** Логгер для записи информации о процессе генерации фигур. */
+    private static final Logger LOGGER = LogManager.getLogger(RandomShapeGenerator.class);
+
+    /** Количество фигур в одном блоке генерации. */
+    public static final int CHUNK_SIZE = 16_384;
+
+    /** Смешивается с зерном для потока, из которого готовятся выборки положений. */
+    private static final long LAYOUT_SEED_MIX = 0x9E3779B97F4A7C15L;
+
+    /** Наибольший радиус окружности. */
+    private static final double MAX_RADIUS = 50;
+    /** Наибольшая сторона прямоугольника. */
+    private static final double MAX_SIDE = 80;
+    /** Наибольшие ширина основания и высота трапеции. */
+    private static final double MAX_TRAPEZOID_WIDTH = 100;
+    private static final double MAX_TRAPEZOID_HEIGHT = 60;
+
+    /** Пул для параллельной генерации; {@code null} — генерация в текущем потоке. */
+    private ForkJoinPool pool;
+    /** Кэш блоков фигур по типам; {@code null} — без кэша. */
+    private volatile BlockCache cache;
+
+    /**
+     * Задает пул потоков для параллельной генерации.
+     *
+     * @param pool пул потоков или {@code null} для генерации в текущем потоке
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Задает кэш блоков фигур для порционной генерации.
+     *
+     * @param cache кэш или {@code null}, чтобы всегда генерировать заново
+     */
+    public void setCache(BlockCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Генерирует набор фигур согласно параметрам и передает их панели.
+     * Также записывает в лог состав конфигурации и общее количество созданных фигур.
+     * @param params параметры генерации (количество фигур, область, кучность, сетка)
+     * @param panel  панель, на которой будут отображены сгенерированные фигуры
+     */
+    public void generate(InputParameters params, DrawPanel panel) {
+        // параметры подставляются в сообщение, только если уровень INFO включен
+        LOGGER.info("Generating shapes: lines={}, circles={}, rectangles={}, triangles={}, "
+                        + "parabolas={}, trapezoids={}, seed={}, distribution={}",
+                params.getLineCount(), params.getCircleCount(), params.getRectangleCount(),
+                params.getTriangleCount(), params.getParabolaCount(), params.getTrapezoidCount(),
+                params.getSeed(), params.getDistribution());
+
+
+        panel.setParameters(
+                params.getMinX(), params.getMaxX(),
+                params.getMinY(), params.getMaxY(),
+                params.getGridStep()
+        );
+        ShapeStore scene = generateScene(params);
+
+        panel.setScene(scene);
+        LOGGER.info("Total shapes created: {}", scene.size());
+    }
+
+    /**
+     * Генерирует сцену согласно параметрам, не привязываясь к панели.
+     * Повторный вызов с теми же параметрами возвращает такую же сцену.
+     *
+     * @param params параметры генерации
+     * @return сцена с буферами фигур всех типов
+     */
+    public ShapeStore generateScene(InputParameters params) {
+        ShapeStore scene = new ShapeStore();
+        runChunks(params, planChunks(params, scene));
+        scene.buildIndex(params.getMinX(), params.getMaxX(),
+                params.getMinY(), params.getMaxY(), params.getGridStep());
+        return scene;
+    }
+
+    /**
+     * Генерирует сцену порциями и передает каждую порцию получателю по мере готовности.
+     * Порция — отдельная сцена с одним блоком фигур одного типа и собственным индексом;
+     * порции приходят в порядке отрисовки и в совокупности совпадают со сценой
+     * {@link #generateScene(InputParameters)} для тех же параметров.
+     * Генерация прекращается, если получатель вернул {@code false}
+     * или текущий поток был прерван.
+     *
+     * @param params   параметры генерации
+     * @param consumer получатель порций
+     * @return {@code true}, если сгенерированы все порции
+     */
+    public boolean generateBatches(InputParameters params, BatchConsumer consumer) {
+        List<KindPlan> kinds = planKinds(params);
+        int total = 0;
+        for (KindPlan plan : kinds) {
+            total += plan.count;
+        }
+
+        BlockCache blocks = cache;
+        // распределение загружается при первом промахе: маске из файла при попадании оно не нужно
+        PositionDistribution distribution = null;
+        // порции генерируются волнами по числу потоков пула, чтобы не уходить далеко вперед
+        int wave = pool == null ? 1 : Math.max(1, pool.getParallelism());
+        int generated = 0;
+        for (KindPlan plan : kinds) {
+            if (plan.count == 0) {
+                continue;
+            }
+            List<ShapeStore> cached = blocks != null ? blocks.get(params, plan.kind) : null;
+            if (cached != null) {
+                for (ShapeStore batch : cached) {
+                    generated += batch.size();
+                    if (!consumer.accept(batch, generated, total)) {
+                        return false;
+                    }
+                }
+                continue;
+            }
+            if (distribution == null) {
+                distribution = PositionDistribution.forSpec(params.getDistribution());
+            }
+            List<Chunk> chunks = new ArrayList<>();
+            addChunks(chunks, plan, plan.prepare(params, distribution), null);
+            List<ShapeStore> block = new ArrayList<>(chunks.size());
+            for (int start = 0; start < chunks.size(); start += wave) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                List<Chunk> part = chunks.subList(start, Math.min(chunks.size(), start + wave));
+                runChunks(params, part);
+                for (Chunk chunk : part) {
+                    generated += chunk.to - chunk.from;
+                    block.add(chunk.batch);
+                    if (!consumer.accept(chunk.batch, generated, total)) {
+                        return false;
+                    }
+                }
+            }
+            // в кэш попадают только полностью сгенерированные типы
+            if (blocks != null) {
+                blocks.put(params, plan.kind, block);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Генерирует сцену порциями, не храня ее целиком. Порции те же, что
+     * у {@link #generateBatches(InputParameters, BatchConsumer)}, но память под них
+     * выделяется один раз на поток пула и переиспользуется, а индекс не строится:
+     * порция действительна только во время вызова получателя. Поэтому расход памяти
+     * не зависит от количества фигур, кроме выборок положений, которые хранят точки
+     * (распределение {@code poisson} — по точке на фигуру).
+     *
+     * @param params   параметры генерации
+     * @param consumer получатель порций; не должен сохранять порцию после возврата
+     * @return {@code true}, если сгенерированы все порции
+     */
+    public boolean generateStream(InputParameters params, BatchConsumer consumer) {
+        List<KindPlan> kinds = planKinds(params);
+        PositionDistribution distribution = PositionDistribution.forSpec(params.getDistribution());
+        int total = 0;
+        for (KindPlan plan : kinds) {
+            total += plan.count;
+        }
+
+        int wave = pool == null ? 1 : Math.max(1, pool.getParallelism());
+        // буферы порций: по сцене на каждое место в волне и каждый тип фигур
+        ShapeStore[][] slots = new ShapeStore[wave][ShapeKind.values().length];
+        List<Chunk> part = new ArrayList<>(wave);
+        List<ShapeStore> batches = new ArrayList<>(wave);
+        int generated = 0;
+        for (KindPlan plan : kinds) {
+            PositionDistribution.Sampler sampler = plan.prepare(params, distribution);
+            for (int from = 0; from < plan.count; from += CHUNK_SIZE) {
+                int to = Math.min(plan.count, from + CHUNK_SIZE);
+                ShapeStore[] slot = slots[part.size()];
+                ShapeStore batch = slot[plan.kind.ordinal()];
+                if (batch == null) {
+                    batch = new ShapeStore();
+                    slot[plan.kind.ordinal()] = batch;
+                }
+                ShapeBuffer buf = batch.buffer(plan.kind, CHUNK_SIZE);
+                buf.clear();
+                buf.reserve(to - from);
+                part.add(new Chunk(null, buf, 0, to - from, from, plan.random.split(), sampler));
+                batches.add(batch);
+                if (part.size() == wave) {
+                    generated = runWave(params, part, batches, generated, total, consumer);
+                    if (generated < 0) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return part.isEmpty() || runWave(params, part, batches, generated, total, consumer) >= 0;
+    }
+
+    /**
+     * Заполняет волну блоков потоковой генерации, передает их получателю и очищает списки.
+     *
+     * @return количество сгенерированных фигур или -1, если генерацию нужно прекратить
+     */
+    private int runWave(InputParameters params, List<Chunk> part, List<ShapeStore> batches,
+                        int generated, int total, BatchConsumer consumer) {
+        if (Thread.currentThread().isInterrupted()) {
+            return -1;
+        }
+        runChunks(params, part);
+        for (int i = 0; i < part.size(); i++) {
+            Chunk chunk = part.get(i);
+            generated += chunk.to - chunk.from;
+            if (!consumer.accept(batches.get(i), generated, total)) {
+                return -1;
+            }
+        }
+        part.clear();
+        batches.clear();
+        return generated;
+    }
+
+    /**
+     * Получатель порций фигур при генерации по частям.
+     */
+    public interface BatchConsumer {
+        /**
+         * Принимает очередную порцию фигур.
+         *
+         * @param batch     порция фигур
+         * @param generated количество фигур, сгенерированных с начала, включая эту порцию
+         * @param total     общее количество фигур
+         * @return {@code false}, чтобы прекратить генерацию
+         */
+        boolean accept(ShapeStore batch, int generated, int total);
+    }
+
+    /**
+     * Разбивает генерацию на блоки по {@link #CHUNK_SIZE} фигур.
+     * Потоки случайных чисел отщепляются от зерна всегда в одном и том же порядке.
+     *
+     * @param params параметры генерации
+     * @param scene  сцена, в буферах которой резервируется место под блоки
+     * @return блоки в порядке отрисовки
+     * @throws IllegalArgumentException если распределение положений задано неверно
+     */
+    private static List<Chunk> planChunks(InputParameters params, ShapeStore scene) {
+        PositionDistribution distribution = PositionDistribution.forSpec(params.getDistribution());
+        List<Chunk> chunks = new ArrayList<>();
+        for (KindPlan plan : planKinds(params)) {
+            addChunks(chunks, plan, plan.prepare(params, distribution), scene);
+        }
+        return chunks;
+    }
+
+    /**
+     * Добавляет блоки фигур одного типа.
+     *
+     * @param chunks  список блоков
+     * @param plan    фигуры этого типа
+     * @param sampler выборка положений
+     * @param scene   сцена, в буферах которой резервируется место под блоки,
+     *                или {@code null}, чтобы каждый блок стал отдельной порцией
+     */
+    private static void addChunks(List<Chunk> chunks, KindPlan plan,
+                                  PositionDistribution.Sampler sampler, ShapeStore scene) {
+        ShapeKind kind = plan.kind;
+        int count = plan.count;
+        SplittableRandom kindRandom = plan.random;
+        ShapeBuffer sceneBuf = null;
+        int first = 0;
+        if (scene != null) {
+            sceneBuf = scene.buffer(kind, count);
+            first = sceneBuf.reserve(count);
+        }
+        for (int from = 0; from < count; from += CHUNK_SIZE) {
+            int to = Math.min(count, from + CHUNK_SIZE);
+            if (scene != null) {
+                chunks.add(new Chunk(null, sceneBuf, first + from, first + to, from,
+                        kindRandom.split(), sampler));
+            } else {
+                ShapeStore batch = new ShapeStore();
+                ShapeBuffer buf = batch.buffer(kind, to - from);
+                buf.reserve(to - from);
+                chunks.add(new Chunk(batch, buf, 0, to - from, from, kindRandom.split(), sampler));
+            }
+        }
+    }
+
+    /**
+     * Готовит для каждого типа фигур поток случайных чисел, от которого отщепляются
+     * потоки блоков, и поток для выборки положений.
+     */
+    private static List<KindPlan> planKinds(InputParameters params) {
+        List<KindPlan> kinds = new ArrayList<>();
+        SplittableRandom root = new SplittableRandom(params.getSeed());
+        SplittableRandom layoutRoot = new SplittableRandom(params.getSeed() ^ LAYOUT_SEED_MIX);
+        for (ShapeKind kind : ShapeKind.values()) {
+            // потоки каждого типа отщепляются всегда, даже при нулевом количестве,
+            // чтобы количество фигур одного типа не влияло на остальные
+            kinds.add(new KindPlan(kind, countOf(params, kind), root.split(), layoutRoot.split()));
+        }
+        return kinds;
+    }
+
+    /**
+     * Заполняет блоки в текущем потоке или в пуле, если он задан.
+     */
+    private void runChunks(InputParameters params, List<Chunk> chunks) {
+        if (pool == null || chunks.size() < 2) {
+            for (Chunk chunk : chunks) {
+                fill(params, chunk);
+            }
+        } else {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks.size());
+            for (Chunk chunk : chunks) {
+                tasks.add(pool.submit(() -> fill(params, chunk)));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        }
+    }
+
+    /**
+     * Фигуры одного типа: количество, поток для блоков и поток для выборки положений.
+     */
+    private static final class KindPlan {
+        final ShapeKind kind;
+        final int count;
+        final SplittableRandom random;
+        final SplittableRandom layoutRandom;
+
+        KindPlan(ShapeKind kind, int count, SplittableRandom random, SplittableRandom layoutRandom) {
+            this.kind = kind;
+            this.count = count;
+            this.random = random;
+            this.layoutRandom = layoutRandom;
+        }
+
+        /**
+         * Готовит выборку положений; вызывается не больше одного раза.
+         *
+         * @throws IllegalArgumentException если распределение не подходит к параметрам
+         */
+        PositionDistribution.Sampler prepare(InputParameters params, PositionDistribution distribution) {
+            return distribution.prepare(params, anchors(params, kind),
+                    count * positionsOf(kind), layoutRandom);
+        }
+    }
+
+    /**
+     * Блок генерации: диапазон буфера и собственный поток случайных чисел.
+     */
+    private static final class Chunk {
+        /** Отдельная порция, которой принадлежит буфер, или {@code null}. */
+        final ShapeStore batch;
+        final ShapeBuffer buf;
+        final int from;
+        final int to;
+        /** Номер первой фигуры блока среди всех фигур этого типа. */
+        final int first;
+        final RandomGenerator random;
+        /** Выборка положений фигур этого типа. */
+        final PositionDistribution.Sampler sampler;
+
+        Chunk(ShapeStore batch, ShapeBuffer buf, int from, int to, int first,
+              RandomGenerator random, PositionDistribution.Sampler sampler) {
+            this.batch = batch;
+            this.buf = buf;
+            this.from = from;
+            this.to = to;
+            this.first = first;
+            this.random = random;
+            this.sampler = sampler;
+        }
+
+        /** @return номер точки {@code k} фигуры {@code s} буфера среди точек этого типа */
+        int position(int s, int k) {
+            return (first + s - from) * positionsOf(buf.getKind()) + k;
+        }
+    }
+
+    static int countOf(InputParameters p, ShapeKind kind) {
+        switch (kind) {
+            case LINE:      return p.getLineCount();
+            case CIRCLE:    return p.getCircleCount();
+            case RECTANGLE: return p.getRectangleCount();
+            case TRIANGLE:  return p.getTriangleCount();
+            case PARABOLA:  return p.getParabolaCount();
+            case TRAPEZOID: return p.getTrapezoidCount();
+            default:
+                throw new IllegalStateException("Unknown shape kind: " + kind);
+        }
+    }
+
+    /**
+     * Возвращает область опорных точек типа фигур: ее точка подходит фигуре любого
+     * размера (см. {@link PositionDistribution#prepare(InputParameters, Rectangle2D,
+     * int, RandomGenerator)}). Ширина или высота отрицательны, если наибольшая фигура
+     * не помещается в область генерации.
+     */
+    static Rectangle2D anchors(InputParameters p, ShapeKind kind) {
+        double minX = p.getMinX();
+        double minY = p.getMinY();
+        double width = p.getMaxX() - minX;
+        double height = p.getMaxY() - minY;
+        switch (kind) {
+            case CIRCLE:
+                return new Rectangle2D.Double(minX + MAX_RADIUS, minY + MAX_RADIUS,
+                        width - 2 * MAX_RADIUS, height - 2 * MAX_RADIUS);
+            case RECTANGLE:
+                return new Rectangle2D.Double(minX, minY, width - MAX_SIDE, height - MAX_SIDE);
+            case TRAPEZOID:
+                return new Rectangle2D.Double(minX, minY + MAX_TRAPEZOID_HEIGHT,
+                        width - MAX_TRAPEZOID_WIDTH, height - MAX_TRAPEZOID_HEIGHT);
+            case PARABOLA:
+                // выбирается только Y начала параболы
+                return new Rectangle2D.Double(minX, minY, 0, height);
+            default:
+                return new Rectangle2D.Double(minX, minY, width, height);
+        }
+    }
+
+    /**
+     * Возвращает количество точек, которые распределение выбирает для одной фигуры:
+     * по одной на каждую вершину линии и треугольника, по одной на остальные фигуры.
+     */
+    private static int positionsOf(ShapeKind kind) {
+        switch (kind) {
+            case LINE:     return 2;
+            case TRIANGLE: return 3;
+            default:       return 1;
+        }
+    }
+
+    private static void fill(InputParameters p, Chunk chunk) {
+        ShapeBuffer buf = chunk.buf;
+        RandomGenerator random = chunk.random;
+        long start = System.nanoTime();
+        switch (buf.getKind()) {
+            case LINE:      addLines(p, chunk, random); break;
+            case CIRCLE:    addCircles(p, chunk, random); break;
+            case RECTANGLE: addRectangles(p, chunk, random); break;
+            case TRIANGLE:  addTriangles(p, chunk, random); break;
+            case PARABOLA:  addParabolas(p, chunk, random); break;
+            case TRAPEZOID: addTrapezoids(p, chunk, random); break;
+            default:
+                throw new IllegalStateException("Unknown shape kind: " + buf.getKind());
+        }
+        buf.computeBounds(chunk.from, chunk.to);
+        RenderMetrics.get().recordGeneration(buf.getKind(), chunk.to - chunk.from,
+                System.nanoTime() - start);
+        if (chunk.batch != null) {
+            chunk.batch.buildIndex(p.getMinX(), p.getMaxX(),
+                    p.getMinY(), p.getMaxY(), p.getGridStep());
+        }
+    }
+
+    /** @return случайный непрозрачный цвет в формате ARGB */
+    private static int randomColor(RandomGenerator random) {
+        return 0xFF000000
+                | random.nextInt(256) << 16
+                | random.nextInt(256) << 8
+                | random.nextInt(256);
+    }
+
+    private static void addLines(InputParameters p, Chunk chunk, RandomGenerator random) {
+        ShapeBuffer buf = chunk.buf;
+        double[] pt = new double[2];
+        for (int s = chunk.from; s < chunk.to; s++) {
+            chunk.sampler.sample(chunk.position(s, 0),
+                    p.getMinX(), p.getMaxX(), p.getMinY(), p.getMaxY(), random, pt);
+            double x1 = pt[0];
+            double y1 = pt[1];
+            chunk.sampler.sample(chunk.position(s, 1),
+                    p.getMinX(), p.getMaxX(), p.getMinY(), p.getMaxY(), random, pt);
+            double x2 = pt[0];
+            double y2 = pt[1];
+            buf.setColor(s, randomColor(random));
+            buf.set(s, 0, (float) x1);
+            buf.set(s, 1, (float) y1);
+            buf.set(s, 2, (float) x2);
+            buf.set(s, 3, (float) y2);
+        }
+    }
+
+    private static void addCircles(InputParameters p, Chunk chunk, RandomGenerator random) {
+        ShapeBuffer buf = chunk.buf;
+        double[] pt = new double[2];
+        for (int s = chunk.from; s < chunk.to; s++) {
+            double r = 10 + random.nextDouble() * (MAX_RADIUS - 10);
+            chunk.sampler.sample(chunk.position(s, 0), p.getMinX() + r, p.getMaxX() - r,
+                    p.getMinY() + r, p.getMaxY() - r, random, pt);
+            buf.setColor(s, randomColor(random));
+            buf.set(s, 0, (float) pt[0]);
+            buf.set(s, 1, (float) pt[1]);
+            buf.set(s, 2, (float) r);
+        }
+    }
+
+    private static void addRectangles(InputParameters p, Chunk chunk, RandomGenerator random) {
+        ShapeBuffer buf = chunk.buf;
+        double[] pt = new double[2];
+        for (int s = chunk.from; s < chunk.to; s++) {
+            double w = 20 + random.nextDouble() * (MAX_SIDE - 20);
+            double h = 20 + random.nextDouble() * (MAX_SIDE - 20);
+            chunk.sampler.sample(chunk.position(s, 0), p.getMinX(), p.getMaxX() - w,
+                    p.getMinY(), p.getMaxY() - h, random, pt);
+            buf.setColor(s, randomColor(random));
+            buf.set(s, 0, (float) pt[0]);
+            buf.set(s, 1, (float) pt[1]);
+            buf.set(s, 2, (float) w);
+            buf.set(s, 3, (float) h);
+        }
+    }
+
+    private static void addTriangles(InputParameters p, Chunk chunk, RandomGenerator random) {
+        ShapeBuffer buf = chunk.buf;
+        double[] pt = new double[2];
+        for (int s = chunk.from; s < chunk.to; s++) {
+            for (int k = 0; k < 3; k++) {
+                chunk.sampler.sample(chunk.position(s, k),
+                        p.getMinX(), p.getMaxX(), p.getMinY(), p.getMaxY(), random, pt);
+                buf.set(s, 2 * k, (int) pt[0]);
+                buf.set(s, 2 * k + 1, (int) pt[1]);
+            }
+            buf.setColor(s, randomColor(random));
+        }
+    }
+
+    private static void addParabolas(InputParameters p, Chunk chunk, RandomGenerator random) {
+        ShapeBuffer buf = chunk.buf;
+        double[] pt = new double[2];
+        for (int s = chunk.from; s < chunk.to; s++) {
+            double a = (random.nextDouble() - 0.5) * 0.01;
+            double b = (random.nextDouble() - 0.5) * 0.5;
+            double c0 = chunk.sampler.sampleY(chunk.position(s, 0),
+                    p.getMinY(), p.getMaxY(), random, pt);
+            buf.setColor(s, randomColor(random));
+            buf.set(s, 0, (float) a);
+            buf.set(s, 1, (float) b);
+            buf.set(s, 2, (float) c0);
+            buf.set(s, 3, (float) p.getMinX());
+            buf.set(s, 4, (float) p.getMaxX());
+        }
+    }
+
+    private static void addTrapezoids(InputParameters p, Chunk chunk, RandomGenerator random) {
+        ShapeBuffer buf = chunk.buf;
+        double[] pt = new double[2];
+        for (int s = chunk.from; s < chunk.to; s++) {
+            double bottomWidth = 40 + random.nextDouble() * (MAX_TRAPEZOID_WIDTH - 40);
+            double topWidth    = 20 + random.nextDouble() * bottomWidth;
+            double height      = 20 + random.nextDouble() * (MAX_TRAPEZOID_HEIGHT - 20);
+
+            chunk.sampler.sample(chunk.position(s, 0), p.getMinX(), p.getMaxX() - bottomWidth,
+                    p.getMinY() + height, p.getMaxY(), random, pt);
+            double baseX = pt[0];
+            double baseY = pt[1];
+
+            buf.setColor(s, randomColor(random));
+            buf.set(s, 0, (int) baseX);
+            buf.set(s, 1, (int) baseY);
+            buf.set(s, 2, (int) (baseX + bottomWidth));
+            buf.set(s, 3, (int) baseY);
+            buf.set(s, 4, (int) (baseX + (bottomWidth - topWidth) / 2.0 + topWidth));
+            buf.set(s, 5, (int) (baseY - height));
+            buf.set(s, 6, (int) (baseX + (bottomWidth - topWidth) / 2.0));
+            buf.set(s, 7, (int) (baseY - height));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.shapes;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Готовое изображение, растянутое на прямоугольную область сцены.
+ * Показывает на панели результат потоковой отрисовки {@link StreamRenderer}:
+ * сцена хранится не фигурами, а пикселями, поэтому при увеличении
+ * видны пиксели изображения.
+ */
+public final class RasterLayer implements DrawableShape {
+
+    /** Наибольшая сторона изображения, в пикселях. */
+    public static final int MAX_SIDE = 8192;
+
+    /** Изображение с прозрачным фоном. */
+    private final BufferedImage image;
+    /** Область сцены, на которую растягивается изображение. */
+    private final Rectangle2D area;
+
+    /**
+     * Создает прозрачное изображение для области сцены: пиксель на единицу координат,
+     * но не больше {@link #MAX_SIDE} пикселей по каждой стороне.
+     *
+     * @param area область в координатах сцены
+     */
+    public RasterLayer(Rectangle2D area) {
+        double scale = Math.min(1, MAX_SIDE / Math.max(area.getWidth(), area.getHeight()));
+        int width = Math.max(1, (int) Math.ceil(area.getWidth() * scale));
+        int height = Math.max(1, (int) Math.ceil(area.getHeight() * scale));
+        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        this.area = (Rectangle2D) area.clone();
+    }
+
+    /** @return изображение слоя */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /** @return преобразование из координат сцены в пиксели изображения */
+    public AffineTransform toImage() {
+        AffineTransform t = AffineTransform.getScaleInstance(
+                image.getWidth() / area.getWidth(), image.getHeight() / area.getHeight());
+        t.translate(-area.getX(), -area.getY());
+        return t;
+    }
+
+    /**
+     * Рисует изображение в его области. Изображение может дорисовываться
+     * в другом потоке; тогда на экран попадает его промежуточное состояние.
+     */
+    @Override
+    public void draw(Graphics2D g2) {
+        AffineTransform t = AffineTransform.getTranslateInstance(area.getX(), area.getY());
+        t.scale(area.getWidth() / image.getWidth(), area.getHeight() / image.getHeight());
+        g2.drawImage(image, t, null);
+    }
+}
@@ -0,0 +1,400 @@
+package org.example.shapes;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики генерации и отрисовки: время генерации и скорость по типам фигур,
+ * гистограмма длительностей отрисовки панели, объединенные и отброшенные перерисовки,
+ * попадания в кэш блоков фигур, память кучи, занятая сценами.
+ * <p>
+ * Один экземпляр на процесс ({@link #get()}); методы записи можно вызывать
+ * из любого потока, они не блокируют. Метрики публикуются в JMX под именем
+ * {@link #OBJECT_NAME} (см. {@link #register()}) и периодически записываются
+ * в лог (см. {@link #startLogging(long)}).
+ */
+public final class RenderMetrics implements RenderMetricsMXBean {
+
+    /** Логгер, в который периодически записываются метрики. */
+    private static final Logger LOGGER = LogManager.getLogger(RenderMetrics.class);
+
+    /** Имя объекта метрик в JMX. */
+    public static final String OBJECT_NAME = "RandomShapes:type=RenderMetrics";
+
+    /** Системное свойство с периодом записи метрик в лог, в секундах; 0 — не записывать. */
+    public static final String LOG_PERIOD_PROPERTY = "metrics.logPeriod";
+    /** Период записи метрик в лог по умолчанию, в секундах. */
+    public static final long DEFAULT_LOG_PERIOD = 60;
+
+    /**
+     * Количество интервалов гистограммы отрисовки: интервал {@code k < BUCKETS - 1}
+     * содержит длительности меньше 2^k мс, последний — все остальные.
+     */
+    private static final int BUCKETS = 12;
+
+    private static final RenderMetrics INSTANCE = new RenderMetrics();
+
+    /** Время генерации и количество фигур по типам. */
+    private final LongAdder[] generationNanos = adders(ShapeKind.values().length);
+    private final LongAdder[] generatedShapes = adders(ShapeKind.values().length);
+
+    /** Количество отрисовок по интервалам гистограммы. */
+    private final AtomicLongArray paintHistogram = new AtomicLongArray(BUCKETS);
+    private final LongAdder paintCount = new LongAdder();
+    private final LongAdder paintNanos = new LongAdder();
+    private final AtomicLong maxPaintNanos = new AtomicLong();
+    private volatile long lastPaintNanos;
+
+    private final LongAdder repaintRequests = new LongAdder();
+    private final LongAdder droppedTiles = new LongAdder();
+    private final LongAdder droppedBatches = new LongAdder();
+    private final LongAdder blockCacheHits = new LongAdder();
+    private final LongAdder blockCacheMisses = new LongAdder();
+
+    /** Сцены, показанные на панели при последней отрисовке. */
+    private volatile List<ShapeStore> scenes = Collections.emptyList();
+
+    /** Поток периодической записи в лог; {@code null}, пока не запущен. */
+    private ScheduledExecutorService logger;
+
+    private RenderMetrics() {
+    }
+
+    /** @return метрики процесса */
+    public static RenderMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Публикует метрики в JMX платформы. Повторный вызов ничего не делает.
+     */
+    public static synchronized void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+            }
+        } catch (JMException | SecurityException e) {
+            LOGGER.warn("Cannot register metrics MBean {}", OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Запускает периодическую запись метрик в лог в фоновом потоке-демоне.
+     * Метрики записываются, только если с прошлой записи что-то сгенерировано
+     * или нарисовано. Повторный вызов ничего не делает.
+     *
+     * @param periodSeconds период записи в секундах; 0 — не записывать
+     */
+    public synchronized void startLogging(long periodSeconds) {
+        if (periodSeconds <= 0 || logger != null) {
+            return;
+        }
+        logger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-logger");
+            t.setDaemon(true);
+            return t;
+        });
+        long[] last = {-1, -1};
+        logger.scheduleAtFixedRate(() -> {
+            long paints = paintCount.sum();
+            long shapes = sum(generatedShapes);
+            if (paints != last[0] || shapes != last[1]) {
+                last[0] = paints;
+                last[1] = shapes;
+                log();
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Записывает текущие метрики в лог.
+     */
+    public void log() {
+        // сообщения собираются в лямбдах: при выключенном уровне INFO метрики не читаются
+        LOGGER.info(() -> new ParameterizedMessage("Generation: shapes={}, ms={}, shapes/s={}",
+                getGeneratedShapes(), getGenerationMillis(), format(getShapesPerSecond())));
+        LOGGER.info(() -> new ParameterizedMessage("Block cache: hits={}, misses={}",
+                getBlockCacheHits(), getBlockCacheMisses()));
+        LOGGER.info(() -> new ParameterizedMessage("Paint: count={}, last={} ms, mean={} ms, "
+                        + "max={} ms, p50<={} ms, p99<={} ms, repaints={}, coalesced={}, "
+                        + "dropped tiles={}, dropped batches={}, heap={} KiB (scenes {} KiB)",
+                getPaintCount(), round(getLastPaintMillis()), round(getMeanPaintMillis()),
+                round(getMaxPaintMillis()), getPaintP50Millis(), getPaintP99Millis(),
+                getRepaintRequests(), getCoalescedRepaints(), getDroppedTiles(),
+                getDroppedBatches(), getHeapUsedBytes() >> 10, sum(getSceneHeapBytes()) >> 10));
+    }
+
+    /**
+     * Учитывает генерацию блока фигур.
+     *
+     * @param kind   тип фигур
+     * @param shapes количество фигур
+     * @param nanos  время генерации в наносекундах
+     */
+    void recordGeneration(ShapeKind kind, int shapes, long nanos) {
+        generationNanos[kind.ordinal()].add(nanos);
+        generatedShapes[kind.ordinal()].add(shapes);
+    }
+
+    /**
+     * Учитывает отрисовку панели.
+     *
+     * @param nanos  длительность отрисовки в наносекундах
+     * @param scenes сцены, показанные на панели
+     */
+    void recordPaint(long nanos, List<ShapeStore> scenes) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = millis == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+        paintHistogram.incrementAndGet(bucket);
+        paintCount.increment();
+        paintNanos.add(nanos);
+        maxPaintNanos.accumulateAndGet(nanos, Math::max);
+        lastPaintNanos = nanos;
+        this.scenes = scenes;
+    }
+
+    /** Учитывает запрос перерисовки панели. */
+    void recordRepaintRequest() {
+        repaintRequests.increment();
+    }
+
+    /** Учитывает плитки, отрисовка которых отменена или результат отброшен. */
+    void recordDroppedTiles(int count) {
+        droppedTiles.add(count);
+    }
+
+    /** Учитывает порцию генерации, не принятую панелью. */
+    void recordDroppedBatch() {
+        droppedBatches.increment();
+    }
+
+    /**
+     * Учитывает обращение к кэшу блоков фигур {@link BlockCache}.
+     *
+     * @param hit {@code true}, если блок найден в кэше
+     */
+    void recordBlockCache(boolean hit) {
+        (hit ? blockCacheHits : blockCacheMisses).increment();
+    }
+
+    @Override
+    public Map<String, Long> getGenerationMillis() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (ShapeKind kind : ShapeKind.values()) {
+            result.put(kind.name(), TimeUnit.NANOSECONDS.toMillis(generationNanos[kind.ordinal()].sum()));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getGeneratedShapes() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (ShapeKind kind : ShapeKind.values()) {
+            result.put(kind.name(), generatedShapes[kind.ordinal()].sum());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getShapesPerSecond() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (ShapeKind kind : ShapeKind.values()) {
+            long nanos = generationNanos[kind.ordinal()].sum();
+            long shapes = generatedShapes[kind.ordinal()].sum();
+            result.put(kind.name(), nanos == 0 ? 0 : shapes * 1e9 / nanos);
+        }
+        return result;
+    }
+
+    /** @return общая скорость генерации всех типов, в фигурах в секунду одного потока */
+    public double getTotalShapesPerSecond() {
+        long nanos = sum(generationNanos);
+        return nanos == 0 ? 0 : sum(generatedShapes) * 1e9 / nanos;
+    }
+
+    @Override
+    public long getPaintCount() {
+        return paintCount.sum();
+    }
+
+    @Override
+    public double getLastPaintMillis() {
+        return lastPaintNanos / 1e6;
+    }
+
+    @Override
+    public double getMeanPaintMillis() {
+        long count = paintCount.sum();
+        return count == 0 ? 0 : paintNanos.sum() / 1e6 / count;
+    }
+
+    @Override
+    public double getMaxPaintMillis() {
+        return maxPaintNanos.get() / 1e6;
+    }
+
+    @Override
+    public long getPaintP50Millis() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getPaintP99Millis() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public Map<String, Long> getPaintHistogram() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int k = 0; k < BUCKETS; k++) {
+            String label = k < BUCKETS - 1 ? "<" + (1L << k) + " ms" : ">=" + (1L << k - 1) + " ms";
+            result.put(label, paintHistogram.get(k));
+        }
+        return result;
+    }
+
+    @Override
+    public long getRepaintRequests() {
+        return repaintRequests.sum();
+    }
+
+    /**
+     * Количество запросов перерисовки, после которых отрисовки не было: Swing объединяет
+     * запросы, поступившие до очередной отрисовки. Отрисовки без запроса (например,
+     * после перекрытия окна) уменьшают это число, поэтому оно приблизительное.
+     */
+    @Override
+    public long getCoalescedRepaints() {
+        return Math.max(0, repaintRequests.sum() - paintCount.sum());
+    }
+
+    @Override
+    public long getDroppedTiles() {
+        return droppedTiles.sum();
+    }
+
+    @Override
+    public long getDroppedBatches() {
+        return droppedBatches.sum();
+    }
+
+    @Override
+    public long getBlockCacheHits() {
+        return blockCacheHits.sum();
+    }
+
+    @Override
+    public long getBlockCacheMisses() {
+        return blockCacheMisses.sum();
+    }
+
+    /**
+     * Память кучи сцен считается по вместимости их буферов и массивов индекса;
+     * буферы, отображенные из файла сцены, в куче не находятся и не учитываются.
+     */
+    @Override
+    public long[] getSceneHeapBytes() {
+        List<ShapeStore> current = scenes;
+        long[] result = new long[current.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = current.get(i).heapBytes();
+        }
+        return result;
+    }
+
+    @Override
+    public long getHeapUsedBytes() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Override
+    public void reset() {
+        for (int k = 0; k < generationNanos.length; k++) {
+            generationNanos[k].reset();
+            generatedShapes[k].reset();
+        }
+        for (int k = 0; k < BUCKETS; k++) {
+            paintHistogram.set(k, 0);
+        }
+        paintCount.reset();
+        paintNanos.reset();
+        maxPaintNanos.set(0);
+        lastPaintNanos = 0;
+        repaintRequests.reset();
+        droppedTiles.reset();
+        droppedBatches.reset();
+        blockCacheHits.reset();
+        blockCacheMisses.reset();
+    }
+
+    /**
+     * Возвращает верхнюю границу интервала гистограммы, в который попадает процентиль.
+     * Для последнего, неограниченного интервала возвращается наибольшая длительность.
+     */
+    private long percentile(double fraction) {
+        long count = paintCount.sum();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int k = 0; k < BUCKETS - 1; k++) {
+            seen += paintHistogram.get(k);
+            if (seen >= rank) {
+                return 1L << k;
+            }
+        }
+        return (long) Math.ceil(getMaxPaintMillis());
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] result = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = new LongAdder();
+        }
+        return result;
+    }
+
+    private static long sum(LongAdder[] adders) {
+        long total = 0;
+        for (LongAdder a : adders) {
+            total += a.sum();
+        }
+        return total;
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long v : values) {
+            total += v;
+        }
+        return total;
+    }
+
+    /** @return значение, округленное до десятых */
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    private static Map<String, String> format(Map<String, Double> rates) {
+        Map<String, String> result = new LinkedHashMap<>();
+        rates.forEach((k, v) -> result.put(k, String.format("%.0f", v)));
+        return result;
+    }
+}
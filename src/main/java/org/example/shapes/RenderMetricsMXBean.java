@@ -0,0 +1,70 @@
+package org.example.shapes;
+
+import java.util.Map;
+
+/**
+ * Интерфейс управления JMX для метрик генерации и отрисовки {@link RenderMetrics}.
+ * Словари с ключами по типам фигур и интервалам гистограммы отображаются
+ * в консолях JMX (например, JConsole или VisualVM) таблицами.
+ */
+public interface RenderMetricsMXBean {
+
+    /** @return суммарное время генерации по типам фигур, в миллисекундах (по всем потокам) */
+    Map<String, Long> getGenerationMillis();
+
+    /** @return количество сгенерированных фигур по типам */
+    Map<String, Long> getGeneratedShapes();
+
+    /** @return скорость генерации по типам фигур, в фигурах в секунду одного потока */
+    Map<String, Double> getShapesPerSecond();
+
+    /** @return количество отрисовок панели */
+    long getPaintCount();
+
+    /** @return длительность последней отрисовки панели, в миллисекундах */
+    double getLastPaintMillis();
+
+    /** @return средняя длительность отрисовки панели, в миллисекундах */
+    double getMeanPaintMillis();
+
+    /** @return наибольшая длительность отрисовки панели, в миллисекундах */
+    double getMaxPaintMillis();
+
+    /** @return верхняя граница медианы длительности отрисовки по гистограмме, в миллисекундах */
+    long getPaintP50Millis();
+
+    /** @return верхняя граница 99-го процентиля длительности отрисовки по гистограмме, в миллисекундах */
+    long getPaintP99Millis();
+
+    /** @return гистограмма длительностей отрисовки: количество отрисовок по интервалам */
+    Map<String, Long> getPaintHistogram();
+
+    /** @return количество запросов перерисовки панели */
+    long getRepaintRequests();
+
+    /** @return количество запросов перерисовки, объединенных Swing с другими запросами */
+    long getCoalescedRepaints();
+
+    /** @return количество плиток, отрисовка которых была отменена или результат отброшен */
+    long getDroppedTiles();
+
+    /** @return количество порций генерации, не принятых панелью после смены ее содержимого */
+    long getDroppedBatches();
+
+    /** @return количество блоков фигур, взятых из кэша вместо генерации */
+    long getBlockCacheHits();
+
+    /** @return количество блоков фигур, которых не было в кэше */
+    long getBlockCacheMisses();
+
+    /** @return память кучи, занятая каждой сценой панели, в байтах (в порядке отрисовки) */
+    long[] getSceneHeapBytes();
+
+    /** @return занятая память кучи всего процесса, в байтах */
+    long getHeapUsedBytes();
+
+    /**
+     * Обнуляет накопленные метрики.
+     */
+    void reset();
+}
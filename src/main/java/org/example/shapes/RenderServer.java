@@ -0,0 +1,553 @@
+package org.example.shapes;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сервер отрисовки: принимает параметры генерации по HTTP и возвращает рисунок в PNG.
+ * Работает в одном долгоживущем процессе без графического интерфейса, поэтому
+ * запуск JVM не повторяется для каждого рисунка.
+ * <p>
+ * Сервер слушает только локальный адрес ({@link InetAddress#getLoopbackAddress()}).
+ * Запрос {@code /render} принимает параметры с теми же ключами, что и {@link BatchMain}
+ * ({@code lines}, {@code circles}, ..., {@code gridStep}, {@code seed},
+ * {@code distribution}): методом GET в строке запроса или методом POST
+ * в теле {@code application/json} — плоском объекте JSON. Без зерна рисунок
+ * получает случайное зерно; зерно рисунка возвращается в заголовке {@code X-Seed}.
+ * Распределение {@code mask} не принимается: оно читает файл на стороне сервера.
+ * <p>
+ * Рисунки генерируются потоково ({@link StreamRenderer}) в пуле из заданного
+ * числа потоков, каждый рисунок — в одном потоке. Перед пулом стоит ограниченная
+ * очередь: если она заполнена, сервер сразу отвечает 503 с заголовком
+ * {@code Retry-After}, а не копит запросы. Одинаковые запросы с заданным зерном,
+ * пришедшие во время отрисовки, получают тот же результат без повторной отрисовки.
+ * Изображения после кодирования возвращаются в пул и переиспользуются.
+ * <p>
+ * Каждый поток отрисовки держит не больше одного изображения из пула и одну карту
+ * плотности мелких фигур (см. {@link HeatMap}), поэтому память пула потоков
+ * ограничена {@link #WORKER_MEMORY} на поток. По умолчанию потоков столько,
+ * сколько процессоров, но не больше, чем таких долей помещается в куче.
+ * <p>
+ * Параметры сервера задаются аргументами вида {@code --ключ=значение}:
+ * <pre>
+ *   --port=N        порт (по умолчанию 8080; 0 — любой свободный)
+ *   --workers=N     количество потоков отрисовки (по умолчанию по числу процессоров,
+ *                   но не больше размера кучи, деленного на {@link #WORKER_MEMORY})
+ *   --queue=N       емкость очереди запросов (по умолчанию 4 на поток)
+ *   --maxShapes=N   наибольшее количество фигур в рисунке (по умолчанию 10 000 000)
+ *   --colorBatching=true  рисовать фигуры группами по цветам палитры
+ * </pre>
+ */
+public final class RenderServer {
+
+    /** Логгер сервера. */
+    private static final Logger LOGGER = LogManager.getLogger(RenderServer.class);
+
+    /** Путь запроса отрисовки. */
+    public static final String RENDER_PATH = "/render";
+    /** Наибольший размер тела запроса, в байтах. */
+    private static final int MAX_BODY = 1 << 16;
+    /** Через сколько секунд клиенту стоит повторить отклоненный запрос. */
+    private static final int RETRY_AFTER_SECONDS = 1;
+    /** Количество потоков, принимающих HTTP-запросы. */
+    private static final int HTTP_THREADS = 2;
+    /**
+     * Память одного потока отрисовки в худшем случае: изображение наибольшего размера
+     * и карта плотности.
+     */
+    static final long WORKER_MEMORY = 4L * RasterLayer.MAX_SIDE * RasterLayer.MAX_SIDE
+            + HeatMap.MAX_BYTES;
+
+    private final HttpServer server;
+    /** Пул отрисовки с ограниченной очередью. */
+    private final ThreadPoolExecutor workers;
+    private final ExecutorService http;
+    private final StreamRenderer renderer;
+    private final ImagePool images;
+    /** Отрисовки по параметрам с заданным зерном, которые еще не закончены. */
+    private final Map<InputParameters, CompletableFuture<byte[]>> inflight = new ConcurrentHashMap<>();
+    private final long maxShapes;
+
+    /**
+     * Создает сервер на локальном адресе; прием запросов начинается после {@link #start()}.
+     *
+     * @param port          порт или 0 для любого свободного
+     * @param workerCount   количество потоков отрисовки
+     * @param queueCapacity емкость очереди запросов, ожидающих отрисовки
+     * @param maxShapes     наибольшее количество фигур в рисунке
+     * @param colorBatching признак отрисовки фигур группами по цветам палитры
+     * @throws IOException если порт занят
+     */
+    public RenderServer(int port, int workerCount, int queueCapacity, long maxShapes,
+                        boolean colorBatching) throws IOException {
+        if (workerCount <= 0 || queueCapacity < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid worker count or queue capacity: " + workerCount + ", " + queueCapacity);
+        }
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                queueCapacity == 0
+                        ? new SynchronousQueue<>()
+                        : new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.http = Executors.newFixedThreadPool(HTTP_THREADS);
+        this.maxShapes = maxShapes;
+        this.images = new ImagePool(workerCount);
+        // каждый рисунок генерируется и рисуется в одном потоке: рисунки идут параллельно
+        this.renderer = new StreamRenderer(new RandomShapeGenerator(), workers, 1);
+        renderer.setColorBatching(colorBatching);
+        this.server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(http);
+        server.createContext(RENDER_PATH, this::handle);
+    }
+
+    /**
+     * Точка входа серверного режима.
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        // PNG кодируется в память: временные файлы кэша ImageIO не нужны
+        ImageIO.setUseCache(false);
+        RenderServer server;
+        try {
+            Properties props = BatchMain.parseArgs(args);
+            int workerCount = Integer.parseInt(props.getProperty("workers",
+                    String.valueOf(defaultWorkerCount())));
+            server = new RenderServer(
+                    Integer.parseInt(props.getProperty("port", "8080")),
+                    workerCount,
+                    Integer.parseInt(props.getProperty("queue", String.valueOf(4 * workerCount))),
+                    Long.parseLong(props.getProperty("maxShapes", "10000000")),
+                    Boolean.parseBoolean(props.getProperty("colorBatching", "false")));
+        } catch (IllegalArgumentException | IOException ex) {
+            LOGGER.error("Cannot start render server", ex);
+            System.err.println("Ошибка запуска сервера: " + ex.getMessage());
+            System.exit(2);
+            return;
+        }
+        RenderMetrics.register();
+        RenderMetrics.get().startLogging(Long.getLong(RenderMetrics.LOG_PERIOD_PROPERTY,
+                RenderMetrics.DEFAULT_LOG_PERIOD));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+        System.out.println("Listening on http://localhost:" + server.getPort() + RENDER_PATH);
+    }
+
+    /**
+     * @return количество потоков отрисовки по умолчанию: по числу процессоров,
+     *         но не больше, чем помещается в куче по {@link #WORKER_MEMORY} на поток
+     */
+    static int defaultWorkerCount() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        int byMemory = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxMemory / WORKER_MEMORY));
+        int count = Math.min(cpus, byMemory);
+        LOGGER.info("Render workers by default: {} ({} processors, {} MiB heap, {} MiB per worker)",
+                count, cpus, maxMemory >> 20, WORKER_MEMORY >> 20);
+        return count;
+    }
+
+    /** Начинает прием запросов. */
+    public void start() {
+        server.start();
+        LOGGER.info("Render server started on port {}", getPort());
+    }
+
+    /** Прекращает прием запросов и прерывает начатые отрисовки. */
+    public void stop() {
+        server.stop(0);
+        workers.shutdownNow();
+        http.shutdownNow();
+        LOGGER.info("Render server stopped");
+    }
+
+    /** @return порт, на котором сервер принимает запросы */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Разбирает запрос и ставит отрисовку в очередь или присоединяет запрос
+     * к такой же начатой отрисовке. Ответ отправляет поток отрисовки.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        InputParameters params;
+        boolean seeded;
+        try {
+            Properties props = parseRequest(exchange);
+            seeded = props.getProperty("seed") != null;
+            params = toParameters(props);
+        } catch (IllegalArgumentException | UncheckedIOException ex) {
+            LOGGER.debug("Bad render request {}: {}", exchange.getRequestURI(), ex.getMessage());
+            sendText(exchange, 400, "Bad request: " + ex.getMessage());
+            return;
+        } catch (UnsupportedOperationException ex) {
+            exchange.getResponseHeaders().set("Allow", "GET, POST");
+            sendText(exchange, 405, ex.getMessage());
+            return;
+        }
+
+        CompletableFuture<byte[]> created = new CompletableFuture<>();
+        // запросы без зерна получили случайное зерно и заведомо не совпадают с другими
+        CompletableFuture<byte[]> running = seeded ? inflight.putIfAbsent(params, created) : null;
+        if (running != null) {
+            LOGGER.debug("Coalesced render request, seed {}", params.getSeed());
+            running.whenComplete((png, error) -> respond(exchange, params, png, error));
+            return;
+        }
+        try {
+            workers.execute(() -> render(params, created));
+        } catch (RejectedExecutionException ex) {
+            inflight.remove(params, created);
+            created.completeExceptionally(ex);
+            LOGGER.debug("Render queue is full, request rejected");
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+            sendText(exchange, 503, "Render queue is full");
+            return;
+        }
+        created.whenComplete((png, error) -> respond(exchange, params, png, error));
+    }
+
+    /**
+     * Рисует рисунок в изображение из пула и кодирует его в PNG.
+     */
+    private void render(InputParameters p, CompletableFuture<byte[]> result) {
+        try {
+            long start = System.nanoTime();
+            int width = (int) Math.ceil(p.getMaxX()) + 2 * DrawPanel.MARGIN;
+            int height = (int) Math.ceil(p.getMaxY()) + 2 * DrawPanel.MARGIN;
+            BufferedImage image = images.acquire(width, height);
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            try {
+                renderer.render(p, image, AffineTransform.getTranslateInstance(
+                        DrawPanel.MARGIN, DrawPanel.MARGIN), Color.WHITE, new GridLayer(p), null);
+                ImageIO.write(image, "png", png);
+            } finally {
+                images.release(image);
+            }
+            LOGGER.info("Rendered {}x{} image, seed {}, in {} ms", width, height, p.getSeed(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            result.complete(png.toByteArray());
+        } catch (Throwable t) {
+            result.completeExceptionally(t);
+        } finally {
+            inflight.remove(p, result);
+        }
+    }
+
+    /**
+     * Отправляет готовый рисунок или сообщение об ошибке.
+     */
+    private static void respond(HttpExchange exchange, InputParameters p, byte[] png, Throwable error) {
+        try {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                LOGGER.error("Rendering failed, seed {}", p.getSeed(), cause);
+                sendText(exchange, 500, "Rendering failed: " + cause);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.getResponseHeaders().set("X-Seed", String.valueOf(p.getSeed()));
+            send(exchange, 200, png);
+        } catch (IOException ex) {
+            // клиент закрыл соединение, не дождавшись ответа
+            LOGGER.debug("Cannot send response: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Читает параметры из строки запроса GET или тела JSON запроса POST.
+     *
+     * @throws IllegalArgumentException      если запрос разобрать не удалось
+     * @throws UnsupportedOperationException если метод запроса не поддерживается
+     */
+    private static Properties parseRequest(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (method.equals("GET")) {
+            return parseQuery(exchange.getRequestURI().getRawQuery());
+        } else if (method.equals("POST")) {
+            return parseJson(new String(readBody(exchange.getRequestBody()), StandardCharsets.UTF_8));
+        }
+        throw new UnsupportedOperationException("Method not allowed: " + method);
+    }
+
+    /**
+     * Строит и проверяет параметры генерации, в том числе ограничения сервера.
+     *
+     * @throws IllegalArgumentException если параметры заданы неверно
+     */
+    private InputParameters toParameters(Properties props) {
+        String distribution = props.getProperty("distribution", PositionDistribution.DEFAULT);
+        if (distribution.startsWith(ImageMaskDistribution.NAME)) {
+            throw new IllegalArgumentException("Mask distributions are not served");
+        }
+        String seedText = props.getProperty("seed");
+        long seed = seedText != null ? Long.parseLong(seedText) : new SplittableRandom().nextLong();
+        InputParameters params = BatchMain.toParameters(props, seed);
+
+        if (params.getLineCount() < 0 || params.getCircleCount() < 0
+                || params.getRectangleCount() < 0 || params.getTriangleCount() < 0
+                || params.getParabolaCount() < 0 || params.getTrapezoidCount() < 0) {
+            throw new IllegalArgumentException("Shape counts must not be negative");
+        }
+        long shapes = (long) params.getLineCount() + params.getCircleCount()
+                + params.getRectangleCount() + params.getTriangleCount()
+                + params.getParabolaCount() + params.getTrapezoidCount();
+        if (shapes > maxShapes) {
+            throw new IllegalArgumentException("Too many shapes: " + shapes + " > " + maxShapes);
+        }
+        if (params.getMaxX() + 2 * DrawPanel.MARGIN > RasterLayer.MAX_SIDE
+                || params.getMaxY() + 2 * DrawPanel.MARGIN > RasterLayer.MAX_SIDE
+                || params.getMaxX() <= 0 || params.getMaxY() <= 0) {
+            throw new IllegalArgumentException("Image side must be in (0, " + RasterLayer.MAX_SIDE + "]");
+        }
+        double gridStep = params.getGridStep();
+        double side = Math.max(params.getMaxX() - params.getMinX(), params.getMaxY() - params.getMinY());
+        if (!(gridStep >= 0) || gridStep > 0 && side / gridStep > GridLayer.MAX_LINES) {
+            throw new IllegalArgumentException("Grid step must be 0 or at least "
+                    + side / GridLayer.MAX_LINES + ": " + gridStep);
+        }
+        return params;
+    }
+
+    /**
+     * Разбирает строку запроса {@code ключ=значение&...}.
+     */
+    static Properties parseQuery(String query) {
+        Properties props = new Properties();
+        if (query == null || query.isEmpty()) {
+            return props;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + pair);
+            }
+            props.setProperty(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return props;
+    }
+
+    /**
+     * Разбирает плоский объект JSON: значения — строки, числа или логические значения;
+     * {@code null} означает значение по умолчанию.
+     */
+    static Properties parseJson(String json) {
+        Properties props = new Properties();
+        JsonReader in = new JsonReader(json);
+        in.expect('{');
+        if (!in.consume('}')) {
+            do {
+                String key = in.string();
+                in.expect(':');
+                String value = in.value();
+                if (value != null) {
+                    props.setProperty(key, value);
+                }
+            } while (in.consume(','));
+            in.expect('}');
+        }
+        in.end();
+        return props;
+    }
+
+    private static byte[] readBody(InputStream body) throws IOException {
+        byte[] data = body.readNBytes(MAX_BODY + 1);
+        if (data.length > MAX_BODY) {
+            throw new IllegalArgumentException("Request body is larger than " + MAX_BODY + " bytes");
+        }
+        return data;
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        send(exchange, status, (text + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.sendResponseHeaders(status, body.length);
+            out.write(body);
+        }
+    }
+
+    /**
+     * Пул изображений для отрисовки: выданных и свободных изображений вместе не больше
+     * заданного количества (по одному на поток отрисовки), давно возвращенные
+     * вытесняются.
+     */
+    private static final class ImagePool {
+        private final int capacity;
+        /** Свободные изображения: первые — давно возвращенные. */
+        private final List<BufferedImage> free = new ArrayList<>();
+        /** Количество выданных изображений. */
+        private int busy;
+
+        ImagePool(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /** @return свободное изображение нужного размера или новое */
+        synchronized BufferedImage acquire(int width, int height) {
+            for (int i = free.size() - 1; i >= 0; i--) {
+                BufferedImage image = free.get(i);
+                if (image.getWidth() == width && image.getHeight() == height) {
+                    busy++;
+                    return free.remove(i);
+                }
+            }
+            // свободные изображения другого размера освобождаются до создания нового
+            while (!free.isEmpty() && free.size() + busy >= capacity) {
+                free.remove(0);
+            }
+            busy++;
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+
+        /** Возвращает изображение в пул; содержимое перерисовывается при следующей отрисовке. */
+        synchronized void release(BufferedImage image) {
+            busy--;
+            if (free.size() == capacity) {
+                free.remove(0);
+            }
+            free.add(image);
+        }
+    }
+
+    /**
+     * Разбор плоского объекта JSON: строки с экранированием, числа, логические значения и null.
+     */
+    private static final class JsonReader {
+        private final String text;
+        private int pos;
+
+        JsonReader(String text) {
+            this.text = text;
+        }
+
+        void expect(char c) {
+            if (!consume(c)) {
+                throw error("'" + c + "' expected");
+            }
+        }
+
+        boolean consume(char c) {
+            skipSpace();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void end() {
+            skipSpace();
+            if (pos != text.length()) {
+                throw error("end of input expected");
+            }
+        }
+
+        /** @return значение как строка или {@code null} для null */
+        String value() {
+            skipSpace();
+            if (pos < text.length() && text.charAt(pos) == '"') {
+                return string();
+            }
+            int start = pos;
+            while (pos < text.length() && "{}[],:\" \t\r\n".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = text.substring(start, pos);
+            if (literal.isEmpty()) {
+                throw error("value expected");
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    break;
+                }
+                char e = text.charAt(pos++);
+                switch (e) {
+                    case '"': case '\\': case '/': sb.append(e); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("bad \\u escape");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("bad \\u escape");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("bad escape \\" + e);
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        private void skipSpace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid JSON at " + pos + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package org.example.shapes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Двоичный файл сцены: параметры генерации и фигуры в колоночном виде.
+ * <p>
+ * Формат (все числа little-endian):
+ * <pre>
+ *   int    сигнатура "RSCN"
+ *   int    версия формата ({@link #VERSION})
+ *   int[6] количество линий, окружностей, прямоугольников, треугольников, парабол, трапеций
+ *   double[6] minX, maxX, minY, maxY, кучность, шаг сетки
+ *   long   зерно
+ *   int    длина n имени распределения положений (с версии 2)
+ *   byte[] имя распределения в UTF-8, n байт (см. {@link PositionDistribution#forSpec(String)})
+ *   int    количество сцен
+ *   для каждой сцены:
+ *     int  количество блоков
+ *     для каждого блока:
+ *       int     тип фигур ({@link ShapeKind#ordinal()})
+ *       int     количество фигур n
+ *       float[] координаты, n * stride
+ *       int[]   цвета ARGB, n
+ *       float[] ограничивающие прямоугольники, n * 4
+ * </pre>
+ * Сцены и блоки записываются в порядке отрисовки, поэтому загруженный рисунок
+ * совпадает с сохраненным. Пользовательские фигуры {@link DrawableShape} не сохраняются.
+ * Файлы версии 1 читаются с распределением {@link PositionDistribution#DEFAULT}.
+ * <p>
+ * При загрузке блоки отображаются в память через {@link FileChannel#map}: фигуры
+ * читаются прямо из файла и не копируются в кучу, поэтому можно открыть сцену
+ * размером больше доступной памяти. Загруженные сцены доступны только для чтения.
+ */
+public final class SceneFile {
+
+    /** Сигнатура файла: "RSCN". */
+    private static final int MAGIC = 0x5253434E;
+    /** Текущая версия формата. */
+    public static final int VERSION = 2;
+
+    /** Размер заголовка версии 1 и постоянной части заголовка версии 2, в байтах. */
+    private static final int HEADER_SIZE = 4 + 4 + 6 * 4 + 6 * 8 + 8 + 4;
+    /** Наибольшая длина имени распределения в заголовке, в байтах. */
+    private static final int MAX_DISTRIBUTION_LENGTH = 1 << 16;
+    /** Размер буфера записи, в байтах. */
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    /** Наименьший размер сцены в файле (количество блоков), в байтах. */
+    private static final int MIN_SCENE_SIZE = 4;
+    /** Наименьший размер блока в файле (тип и количество фигур), в байтах. */
+    private static final int MIN_BLOCK_SIZE = 8;
+
+    /** Параметры, с которыми была сгенерирована сцена. */
+    private final InputParameters parameters;
+    /** Сцены в порядке отрисовки. */
+    private final List<ShapeStore> scenes;
+
+    private SceneFile(InputParameters parameters, List<ShapeStore> scenes) {
+        this.parameters = parameters;
+        this.scenes = Collections.unmodifiableList(scenes);
+    }
+
+    /** @return параметры, с которыми была сгенерирована сцена */
+    public InputParameters getParameters() { return parameters; }
+
+    /** @return загруженные сцены в порядке отрисовки */
+    public List<ShapeStore> getScenes() { return scenes; }
+
+    /**
+     * Сохраняет сцены в файл.
+     *
+     * @param path       путь к файлу; существующий файл перезаписывается
+     * @param parameters параметры генерации
+     * @param scenes     сцены в порядке отрисовки
+     * @throws IOException при ошибке записи
+     */
+    public static void save(Path path, InputParameters parameters, List<ShapeStore> scenes)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            out.putInt(MAGIC).putInt(VERSION);
+            out.putInt(parameters.getLineCount())
+                    .putInt(parameters.getCircleCount())
+                    .putInt(parameters.getRectangleCount())
+                    .putInt(parameters.getTriangleCount())
+                    .putInt(parameters.getParabolaCount())
+                    .putInt(parameters.getTrapezoidCount());
+            out.putDouble(parameters.getMinX())
+                    .putDouble(parameters.getMaxX())
+                    .putDouble(parameters.getMinY())
+                    .putDouble(parameters.getMaxY())
+                    .putDouble(parameters.getDensity())
+                    .putDouble(parameters.getGridStep());
+            out.putLong(parameters.getSeed());
+            byte[] distribution = parameters.getDistribution().getBytes(StandardCharsets.UTF_8);
+            if (distribution.length > MAX_DISTRIBUTION_LENGTH) {
+                throw new IOException("Distribution name is too long");
+            }
+            out.putInt(distribution.length);
+            writeSpace(channel, out, distribution.length);
+            out.put(distribution);
+            writeSpace(channel, out, 4);
+            out.putInt(scenes.size());
+
+            for (ShapeStore scene : scenes) {
+                List<ShapeBuffer> blocks = new ArrayList<>(scene.buffers());
+                writeSpace(channel, out, 4);
+                out.putInt(blocks.size());
+                for (ShapeBuffer block : blocks) {
+                    writeSpace(channel, out, 8);
+                    out.putInt(block.getKind().ordinal()).putInt(block.size());
+                    writeFloats(channel, out, block.coordData());
+                    writeInts(channel, out, block.colorData());
+                    writeFloats(channel, out, block.boxData());
+                }
+            }
+            flush(channel, out);
+        }
+    }
+
+    /**
+     * Открывает файл сцены. Фигуры отображаются в память и не копируются в кучу;
+     * для каждой сцены строится пространственный индекс.
+     *
+     * @param path путь к файлу
+     * @return параметры и сцены из файла
+     * @throws IOException при ошибке чтения или неверном формате файла
+     */
+    public static SceneFile load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a scene file: " + path);
+            }
+            MappedReader reader = new MappedReader(channel);
+            ByteBuffer header = reader.view(0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a scene file: " + path);
+            }
+            int version = header.getInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Unsupported scene file version " + version + ": " + path);
+            }
+            int lines = header.getInt();
+            int circles = header.getInt();
+            int rectangles = header.getInt();
+            int triangles = header.getInt();
+            int parabolas = header.getInt();
+            int trapezoids = header.getInt();
+            double minX = header.getDouble();
+            double maxX = header.getDouble();
+            double minY = header.getDouble();
+            double maxY = header.getDouble();
+            double density = header.getDouble();
+            double gridStep = header.getDouble();
+            long seed = header.getLong();
+            long position = HEADER_SIZE - 4;
+            String distribution = PositionDistribution.DEFAULT;
+            if (version >= 2) {
+                int length = header.getInt();
+                if (length < 0 || length > MAX_DISTRIBUTION_LENGTH) {
+                    throw new IOException("Corrupted scene file: " + path);
+                }
+                byte[] name = new byte[length];
+                reader.view(position + 4, length).get(name);
+                distribution = new String(name, StandardCharsets.UTF_8);
+                position += 4 + length;
+            }
+            InputParameters parameters = new InputParameters(
+                    lines, circles, rectangles, triangles, parabolas, trapezoids,
+                    minX, maxX, minY, maxY, density, gridStep, seed, distribution);
+            int sceneCount = reader.view(position, 4).getInt(0);
+            position += 4;
+            // количества из файла проверяются по его размеру до выделения памяти под них
+            if (sceneCount < 0 || sceneCount > (channel.size() - position) / MIN_SCENE_SIZE) {
+                throw new IOException("Corrupted scene file: " + path);
+            }
+
+            List<ShapeStore> scenes = new ArrayList<>(sceneCount);
+            ShapeKind[] kinds = ShapeKind.values();
+            for (int s = 0; s < sceneCount; s++) {
+                ShapeStore scene = new ShapeStore();
+                int blockCount = reader.view(position, 4).getInt(0);
+                position += 4;
+                if (blockCount < 0 || blockCount > (channel.size() - position) / MIN_BLOCK_SIZE) {
+                    throw new IOException("Corrupted scene file at offset " + (position - 4));
+                }
+                for (int b = 0; b < blockCount; b++) {
+                    ByteBuffer blockHeader = reader.view(position, 8);
+                    int kindIndex = blockHeader.getInt(0);
+                    int size = blockHeader.getInt(4);
+                    if (kindIndex < 0 || kindIndex >= kinds.length || size < 0) {
+                        throw new IOException("Corrupted scene file at offset " + position);
+                    }
+                    position += 8;
+                    ShapeKind kind = kinds[kindIndex];
+
+                    long coordBytes = 4L * size * kind.getStride();
+                    FloatBuffer coords = reader.view(position, coordBytes).asFloatBuffer();
+                    position += coordBytes;
+                    IntBuffer colors = reader.view(position, 4L * size).asIntBuffer();
+                    position += 4L * size;
+                    FloatBuffer boxes = reader.view(position, 16L * size).asFloatBuffer();
+                    position += 16L * size;
+
+                    try {
+                        scene.addBuffer(new ShapeBuffer(kind, size, coords, colors, boxes));
+                    } catch (IllegalStateException e) {
+                        throw new IOException("Corrupted scene file: " + e.getMessage(), e);
+                    }
+                }
+                scene.buildIndex(parameters.getMinX(), parameters.getMaxX(),
+                        parameters.getMinY(), parameters.getMaxY(), parameters.getGridStep());
+                scenes.add(scene);
+            }
+            return new SceneFile(parameters, scenes);
+        }
+    }
+
+    private static void writeFloats(FileChannel channel, ByteBuffer out, FloatBuffer data)
+            throws IOException {
+        while (data.hasRemaining()) {
+            writeSpace(channel, out, 4);
+            FloatBuffer view = out.asFloatBuffer();
+            int n = Math.min(view.remaining(), data.remaining());
+            view.put(data.slice().limit(n));
+            data.position(data.position() + n);
+            out.position(out.position() + 4 * n);
+        }
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer out, IntBuffer data)
+            throws IOException {
+        while (data.hasRemaining()) {
+            writeSpace(channel, out, 4);
+            IntBuffer view = out.asIntBuffer();
+            int n = Math.min(view.remaining(), data.remaining());
+            view.put(data.slice().limit(n));
+            data.position(data.position() + n);
+            out.position(out.position() + 4 * n);
+        }
+    }
+
+    /**
+     * Освобождает в буфере записи место под {@code bytes} байт, при необходимости сбрасывая его.
+     */
+    private static void writeSpace(FileChannel channel, ByteBuffer out, int bytes)
+            throws IOException {
+        if (out.remaining() < bytes) {
+            flush(channel, out);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Чтение файла через большие отображенные в память окна.
+     * Блоки сцены выдаются как срезы окна, поэтому количество отображений
+     * не зависит от количества сцен и блоков в файле.
+     */
+    private static final class MappedReader {
+        /** Размер окна отображения, в байтах. */
+        private static final long WINDOW_SIZE = 1L << 30;
+
+        private final FileChannel channel;
+        private final long fileSize;
+        /** Текущее окно и его смещение в файле. */
+        private ByteBuffer window;
+        private long windowStart;
+
+        MappedReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.fileSize = channel.size();
+        }
+
+        /**
+         * Возвращает участок файла [position, position + bytes) как буфер little-endian.
+         */
+        ByteBuffer view(long position, long bytes) throws IOException {
+            if (bytes > Integer.MAX_VALUE) {
+                throw new IOException("Scene block is too large to map: " + bytes + " bytes");
+            }
+            if (position + bytes > fileSize) {
+                throw new IOException("Scene file is truncated at offset " + position);
+            }
+            if (window == null || position < windowStart
+                    || position + bytes > windowStart + window.capacity()) {
+                long length = Math.min(Math.max(bytes, WINDOW_SIZE), fileSize - position);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                windowStart = position;
+            }
+            return window.slice((int) (position - windowStart), (int) bytes)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
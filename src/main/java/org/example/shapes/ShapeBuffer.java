@@ -0,0 +1,428 @@
+package org.example.shapes;
+
+import java.awt.*;                           // базовые графические классы AWT
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Колоночное хранилище фигур одного типа.
+ * Координаты всех фигур лежат подряд в одном массиве {@code float},
+ * цвета — в массиве упакованных ARGB-значений {@code int}.
+ * Для каждой фигуры хранится также ее ограничивающий прямоугольник, а для парабол —
+ * еще и данные ломаной ({@link #curve(int, float[])}), чтобы отрисовка не вычисляла
+ * многочлен заново на каждом проходе. Отдельный объект на каждую фигуру не создается.
+ * <p>
+ * Данные хранятся в буферах NIO: обычно это массивы в куче, но буфер можно
+ * построить и поверх файла сцены, отображенного в память (см. {@link SceneFile}).
+ * Такой буфер доступен только для чтения.
+ */
+public final class ShapeBuffer {
+
+    /** Тип фигур в буфере. */
+    private final ShapeKind kind;
+    /** Количество координат на одну фигуру. */
+    private final int stride;
+    /** Координаты фигур: фигура i занимает элементы [i*stride, (i+1)*stride). */
+    private FloatBuffer coords;
+    /** Цвета фигур в формате ARGB. */
+    private IntBuffer colors;
+    /** Ограничивающие прямоугольники фигур: minX, minY, maxX, maxY на фигуру. */
+    private FloatBuffer boxes;
+    /** Данные ломаных парабол: {@link #CURVE_STRIDE} значений на фигуру; у других типов пустой. */
+    private FloatBuffer curves;
+    /** Количество фигур в буфере. */
+    private int size;
+
+    /**
+     * Создает пустой буфер с заданной начальной вместимостью.
+     *
+     * @param kind     тип фигур
+     * @param capacity ожидаемое количество фигур
+     */
+    public ShapeBuffer(ShapeKind kind, int capacity) {
+        this.kind = kind;
+        this.stride = kind.getStride();
+        this.coords = FloatBuffer.allocate(Math.max(capacity, 0) * stride);
+        this.colors = IntBuffer.allocate(Math.max(capacity, 0));
+        this.boxes = FloatBuffer.allocate(Math.max(capacity, 0) * 4);
+        this.curves = FloatBuffer.allocate(Math.max(capacity, 0) * curveStride(kind));
+    }
+
+    /**
+     * Создает буфер поверх готовых данных, например отображенных в память из файла.
+     * Данные не копируются; данные ломаных парабол вычисляются в куче.
+     *
+     * @param kind   тип фигур
+     * @param size   количество фигур
+     * @param coords координаты, не меньше size*stride элементов
+     * @param colors цвета, не меньше size элементов
+     * @param boxes  ограничивающие прямоугольники, не меньше size*4 элементов
+     */
+    ShapeBuffer(ShapeKind kind, int size, FloatBuffer coords, IntBuffer colors, FloatBuffer boxes) {
+        if (coords.capacity() < size * kind.getStride() || colors.capacity() < size
+                || boxes.capacity() < size * 4) {
+            throw new IllegalArgumentException("Buffers are too small for " + size + " shapes");
+        }
+        this.kind = kind;
+        this.stride = kind.getStride();
+        this.size = size;
+        this.coords = coords;
+        this.colors = colors;
+        this.boxes = boxes;
+        this.curves = FloatBuffer.allocate(size * curveStride(kind));
+        computeCurves(0, size);
+    }
+
+    /** @return тип фигур в буфере */
+    public ShapeKind getKind() { return kind; }
+
+    /** @return количество фигур в буфере */
+    public int size() { return size; }
+
+    /**
+     * Добавляет новую фигуру с заданным цветом.
+     * Координаты заполняются затем через {@link #set(int, int, float)},
+     * после чего вызывается {@link #computeBounds(int, int)}.
+     *
+     * @param argb цвет фигуры в формате ARGB
+     * @return индекс добавленной фигуры
+     */
+    public int add(int argb) {
+        if (size == colors.capacity()) {
+            grow(Math.max(16, size + (size >> 1)));
+        }
+        colors.put(size, argb);
+        return size++;
+    }
+
+    /**
+     * Записывает координату фигуры.
+     *
+     * @param index индекс фигуры
+     * @param k     номер координаты (0 .. stride-1)
+     * @param value значение
+     */
+    public void set(int index, int k, float value) {
+        coords.put(index * stride + k, value);
+    }
+
+    /**
+     * Резервирует место под {@code count} фигур подряд.
+     * Зарезервированные фигуры заполняются через {@link #set(int, int, float)}
+     * и {@link #setColor(int, int)}; разные диапазоны можно заполнять из разных потоков.
+     *
+     * @param count количество фигур
+     * @return индекс первой зарезервированной фигуры
+     */
+    public int reserve(int count) {
+        int first = size;
+        int required = size + count;
+        if (required > colors.capacity()) {
+            grow(required);
+        }
+        size = required;
+        return first;
+    }
+
+    /**
+     * Удаляет все фигуры, сохраняя выделенную память, чтобы заполнить буфер заново.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Переносит данные в буферы большей вместимости в куче.
+     */
+    private void grow(int capacity) {
+        coords = copyOf(coords, size * stride, capacity * stride);
+        boxes = copyOf(boxes, size * 4, capacity * 4);
+        curves = copyOf(curves, size * curveStride(kind), capacity * curveStride(kind));
+        IntBuffer grown = IntBuffer.allocate(capacity);
+        grown.put(colors.duplicate().clear().limit(size));
+        colors = grown.clear();
+    }
+
+    private static FloatBuffer copyOf(FloatBuffer src, int length, int capacity) {
+        FloatBuffer grown = FloatBuffer.allocate(capacity);
+        grown.put(src.duplicate().clear().limit(length));
+        return grown.clear();
+    }
+
+    /**
+     * Заменяет цвет фигуры.
+     *
+     * @param index индекс фигуры
+     * @param argb  цвет в формате ARGB
+     */
+    public void setColor(int index, int argb) {
+        colors.put(index, argb);
+    }
+
+    /** @return координата номер {@code k} фигуры {@code index} */
+    public float get(int index, int k) {
+        return coords.get(index * stride + k);
+    }
+
+    /** @return цвет фигуры {@code index} в формате ARGB */
+    public int getColor(int index) {
+        return colors.get(index);
+    }
+
+    /**
+     * Возвращает память кучи, занятую данными буфера: отображенные из файла
+     * и другие внешние буферы не учитываются.
+     *
+     * @return размер данных в куче, в байтах
+     */
+    public long heapBytes() {
+        long bytes = 0;
+        if (!coords.isDirect()) {
+            bytes += 4L * coords.capacity();
+        }
+        if (!boxes.isDirect()) {
+            bytes += 4L * boxes.capacity();
+        }
+        if (!colors.isDirect()) {
+            bytes += 4L * colors.capacity();
+        }
+        bytes += 4L * curves.capacity();
+        return bytes;
+    }
+
+    /** @return координаты фигур буфера (только для чтения, позиция 0, предел size*stride) */
+    FloatBuffer coordData() {
+        return coords.asReadOnlyBuffer().clear().limit(size * stride);
+    }
+
+    /** @return цвета фигур буфера (только для чтения, позиция 0, предел size) */
+    IntBuffer colorData() {
+        return colors.asReadOnlyBuffer().clear().limit(size);
+    }
+
+    /** @return ограничивающие прямоугольники фигур буфера (только для чтения, предел size*4) */
+    FloatBuffer boxData() {
+        return boxes.asReadOnlyBuffer().clear().limit(size * 4);
+    }
+
+    /**
+     * Вычисляет и запоминает ограничивающие прямоугольники фигур диапазона,
+     * а для парабол — и данные ломаных. Вызывается после заполнения координат;
+     * разные диапазоны можно обрабатывать из разных потоков.
+     *
+     * @param from индекс первой фигуры
+     * @param to   индекс после последней фигуры
+     */
+    public void computeBounds(int from, int to) {
+        float[] box = new float[4];
+        for (int i = from; i < to; i++) {
+            computeBox(i, box);
+            boxes.put(i * 4, box);
+        }
+        computeCurves(from, to);
+    }
+
+    /**
+     * Возвращает ограничивающий прямоугольник фигуры в координатах сцены,
+     * вычисленный в {@link #computeBounds(int, int)}.
+     *
+     * @param index индекс фигуры
+     * @param out   массив для результата: minX, minY, maxX, maxY
+     */
+    public void bounds(int index, float[] out) {
+        boxes.get(index * 4, out, 0, 4);
+    }
+
+    /** Количество значений данных ломаной на одну параболу. */
+    static final int CURVE_STRIDE = 3;
+
+    private static int curveStride(ShapeKind kind) {
+        return kind == ShapeKind.PARABOLA ? CURVE_STRIDE : 0;
+    }
+
+    /**
+     * Возвращает данные ломаной параболы y = ax^2 + bx + c на [x0, x1], вычисленные
+     * в {@link #computeBounds(int, int)}: начальную точку y(x0), наклон y'(x0) = 2a*x0 + b
+     * и кривизну (x1 - x0) * sqrt(|a|) / 2. Количество отрезков ломаной, при котором
+     * хорда отклоняется от кривой не больше чем на d, равно кривизне, умноженной
+     * на sqrt(масштаб по Y / d), поэтому при отрисовке не вычисляются ни многочлен,
+     * ни корень на каждую фигуру.
+     *
+     * @param index индекс параболы
+     * @param out   массив для результата: y(x0), y'(x0), кривизна
+     */
+    void curve(int index, float[] out) {
+        curves.get(index * CURVE_STRIDE, out, 0, CURVE_STRIDE);
+    }
+
+    /**
+     * Вычисляет данные ломаных парабол диапазона; у других типов ничего не делает.
+     */
+    private void computeCurves(int from, int to) {
+        if (kind != ShapeKind.PARABOLA) {
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            int o = i * stride;
+            double a = coords.get(o);
+            double b = coords.get(o + 1);
+            double x0 = coords.get(o + 3);
+            double x1 = coords.get(o + 4);
+            int q = i * CURVE_STRIDE;
+            curves.put(q, (float) ((a * x0 + b) * x0 + coords.get(o + 2)));
+            curves.put(q + 1, (float) (2 * a * x0 + b));
+            curves.put(q + 2, (float) (Math.max(0, x1 - x0) * Math.sqrt(Math.abs(a)) / 2));
+        }
+    }
+
+    /**
+     * Вычисляет ограничивающий прямоугольник фигуры в координатах сцены.
+     *
+     * @param index индекс фигуры
+     * @param out   массив для результата: minX, minY, maxX, maxY
+     */
+    private void computeBox(int index, float[] out) {
+        int p = 0;
+        int o = index * stride;
+        FloatBuffer c = coords;
+        switch (kind) {
+            case CIRCLE: {
+                float r = c.get(o + 2);
+                out[p] = c.get(o) - r;
+                out[p + 1] = c.get(o + 1) - r;
+                out[p + 2] = c.get(o) + r;
+                out[p + 3] = c.get(o + 1) + r;
+                break;
+            }
+            case RECTANGLE:
+                out[p] = c.get(o);
+                out[p + 1] = c.get(o + 1);
+                out[p + 2] = c.get(o) + c.get(o + 2);
+                out[p + 3] = c.get(o + 1) + c.get(o + 3);
+                break;
+            case PARABOLA: {
+                double a = c.get(o);
+                double b = c.get(o + 1);
+                double c0 = c.get(o + 2);
+                double x0 = c.get(o + 3);
+                double x1 = c.get(o + 4);
+                double y0 = a * x0 * x0 + b * x0 + c0;
+                double y1 = a * x1 * x1 + b * x1 + c0;
+                double minY = Math.min(y0, y1);
+                double maxY = Math.max(y0, y1);
+                if (a != 0) {
+                    double xv = -b / (2 * a);
+                    if (xv > x0 && xv < x1) {
+                        double yv = a * xv * xv + b * xv + c0;
+                        minY = Math.min(minY, yv);
+                        maxY = Math.max(maxY, yv);
+                    }
+                }
+                out[p] = (float) x0;
+                out[p + 1] = (float) minY;
+                out[p + 2] = (float) x1;
+                out[p + 3] = (float) maxY;
+                break;
+            }
+            case LINE:
+            case TRIANGLE:
+            case TRAPEZOID: {
+                // фигуры, заданные вершинами: x и y чередуются
+                float minX = c.get(o);
+                float minY = c.get(o + 1);
+                float maxX = minX;
+                float maxY = minY;
+                for (int k = 2; k < stride; k += 2) {
+                    minX = Math.min(minX, c.get(o + k));
+                    maxX = Math.max(maxX, c.get(o + k));
+                    minY = Math.min(minY, c.get(o + k + 1));
+                    maxY = Math.max(maxY, c.get(o + k + 1));
+                }
+                out[p] = minX;
+                out[p + 1] = minY;
+                out[p + 2] = maxX;
+                out[p + 3] = maxY;
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown shape kind: " + kind);
+        }
+    }
+
+    /**
+     * Проверяет, проходит ли контур фигуры рядом с точкой.
+     *
+     * @param index     индекс фигуры
+     * @param x         координата X точки в координатах сцены
+     * @param y         координата Y точки в координатах сцены
+     * @param tolerance допустимое расстояние от контура
+     * @return {@code true}, если точка лежит не дальше {@code tolerance} от контура
+     */
+    public boolean hits(int index, double x, double y, double tolerance) {
+        int o = index * stride;
+        FloatBuffer c = coords;
+        switch (kind) {
+            case LINE:
+                return segmentDistance(x, y, c.get(o), c.get(o + 1), c.get(o + 2), c.get(o + 3)) <= tolerance;
+            case CIRCLE:
+                return Math.abs(Math.hypot(x - c.get(o), y - c.get(o + 1)) - c.get(o + 2)) <= tolerance;
+            case RECTANGLE: {
+                double x0 = c.get(o);
+                double y0 = c.get(o + 1);
+                double x1 = x0 + c.get(o + 2);
+                double y1 = y0 + c.get(o + 3);
+                return segmentDistance(x, y, x0, y0, x1, y0) <= tolerance
+                        || segmentDistance(x, y, x1, y0, x1, y1) <= tolerance
+                        || segmentDistance(x, y, x1, y1, x0, y1) <= tolerance
+                        || segmentDistance(x, y, x0, y1, x0, y0) <= tolerance;
+            }
+            case PARABOLA: {
+                if (x < c.get(o + 3) - tolerance || x > c.get(o + 4) + tolerance) {
+                    return false;
+                }
+                double py = c.get(o) * x * x + c.get(o + 1) * x + c.get(o + 2);
+                // расстояние по вертикали, деленное на длину нормали, — оценка расстояния до кривой
+                double slope = 2 * c.get(o) * x + c.get(o + 1);
+                return Math.abs(y - py) / Math.sqrt(1 + slope * slope) <= tolerance;
+            }
+            case TRIANGLE:
+            case TRAPEZOID: {
+                for (int k = 0; k < stride; k += 2) {
+                    int next = (k + 2) % stride;
+                    if (segmentDistance(x, y, c.get(o + k), c.get(o + k + 1),
+                            c.get(o + next), c.get(o + next + 1)) <= tolerance) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            default:
+                throw new IllegalStateException("Unknown shape kind: " + kind);
+        }
+    }
+
+    /** @return расстояние от точки (x, y) до отрезка (x1, y1)-(x2, y2) */
+    private static double segmentDistance(double x, double y,
+                                          double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double len2 = dx * dx + dy * dy;
+        double t = len2 == 0 ? 0 : ((x - x1) * dx + (y - y1) * dy) / len2;
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
+    }
+
+    /** Количество отрезков ломаной параболы при отрисовке без учета масштаба. */
+    static final int PARABOLA_STEPS = 40;
+
+    /**
+     * Рисует одну фигуру из буфера. Для отрисовки многих фигур подряд
+     * используется {@link ShapePainter}, который не создает объектов на каждую фигуру.
+     *
+     * @param g2    графический контекст
+     * @param index индекс фигуры
+     */
+    public void draw(Graphics2D g2, int index) {
+        new ShapePainter(g2, null).paint(this, index, PARABOLA_STEPS);
+    }
+}
@@ -0,0 +1,31 @@
+package org.example.shapes;
+
+/**
+ * Типы фигур, которые умеет создавать генератор.
+ * Для каждого типа задано количество координат, описывающих одну фигуру в буфере.
+ */
+public enum ShapeKind {
+
+    /** Отрезок: x1, y1, x2, y2. */
+    LINE(4),
+    /** Окружность: центр x, центр y, радиус. */
+    CIRCLE(3),
+    /** Прямоугольник: x, y, ширина, высота. */
+    RECTANGLE(4),
+    /** Треугольник: x1, y1, x2, y2, x3, y3. */
+    TRIANGLE(6),
+    /** Парабола y = a*x^2 + b*x + c на отрезке [x0, x1]: a, b, c, x0, x1. */
+    PARABOLA(5),
+    /** Трапеция: четыре вершины x1, y1 ... x4, y4. */
+    TRAPEZOID(8);
+
+    /** Количество координат на одну фигуру. */
+    private final int stride;
+
+    ShapeKind(int stride) {
+        this.stride = stride;
+    }
+
+    /** @return количество координат на одну фигуру */
+    public int getStride() { return stride; }
+}
@@ -0,0 +1,455 @@
+package org.example.shapes;
+
+import java.awt.*;                           // базовые графические классы AWT
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+
+/**
+ * Отрисовка фигур из буферов с учетом уровня детализации.
+ * <p>
+ * Создается для графического контекста и учитывает его масштаб; проход отрисовки
+ * заканчивается вызовом {@link #finish()}:
+ * <ul>
+ *   <li>фигуры, которые на экране меньше пикселя, не обводятся, а накапливаются
+ *       в карте плотности {@link HeatMap}; карта рисуется поверх фигур в {@link #finish()}
+ *       (пиксель получает средний цвет попавших в него фигур и тем большую
+ *       непрозрачность, чем их больше);</li>
+ *   <li>количество отрезков ломаной параболы подбирается по ее размеру на экране
+ *       и кривизне так, чтобы ломаная отклонялась от кривой не больше чем на
+ *       {@link #PARABOLA_TOLERANCE} пикселя; кривизна вычислена заранее
+ *       ({@link ShapeBuffer#curve(int, float[])}).</li>
+ * </ul>
+ * Карта плотности строится по области отсечения контекста; если отсечение не задано,
+ * мелкие фигуры рисуются как обычно. Память карты ограничена (см. {@link HeatMap#MAX_CELLS}),
+ * а сама карта переиспользуется: отрисовщик берет карту своего потока, поэтому проходы
+ * в одном потоке не должны перемежаться, а память карт не превышает одной карты на поток,
+ * рисующий мелкие фигуры.
+ * <p>
+ * Порядок наложения: карта рисуется в {@link #finish()}, после всех крупных фигур прохода,
+ * поэтому мелкие фигуры прохода оказываются поверх крупных, даже если в сцене идут раньше.
+ * Видно это только в пикселях, где мелкая фигура лежит под контуром крупной.
+ * Между проходами порядок сохраняется: панель и потоковая отрисовка рисуют каждую
+ * порцию генерации (до {@value RandomShapeGenerator#CHUNK_SIZE} фигур одного типа)
+ * отдельным проходом, а пакетная отрисовка ({@link TiledRenderer}) — всю сцену
+ * плитки одним проходом. Сбрасывать карту перед каждой крупной фигурой, следующей
+ * за мелкими, слишком дорого: в сценах, где мелкие и крупные фигуры чередуются,
+ * это означало бы отрисовку карты почти на каждую фигуру.
+ * Преобразование контекста должно состоять только из масштаба и сдвига.
+ * <p>
+ * Если в контексте задана подсказка {@link #KEY_DRAW_ORDER} со значением
+ * {@link #VALUE_ORDER_BY_COLOR}, цвета фигур сводятся к палитре из
+ * {@link #PALETTE_SIZE} цветов, фигуры раскладываются по цветам палитры, и каждая
+ * группа рисуется одним контуром {@link Path2D} за один вызов; фигуры разных цветов
+ * внутри группы перестают перекрываться в исходном порядке. Вызовов и смен цвета
+ * становится меньше, но в программном конвейере Java2D они дешевы, а общий цикл
+ * по контуру медленнее отдельных циклов для ломаных и прямоугольников, поэтому
+ * группировка в целом не быстрее строгого порядка (замеры — в {@code PaintBenchmark}).
+ * По умолчанию ({@link #VALUE_ORDER_STRICT}) фигуры рисуются строго по порядку.
+ * <p>
+ * Цикл отрисовки не создает объектов на каждую фигуру: массивы вершин и эллипс
+ * переиспользуются, ломаная параболы строится разностной схемой от начальной точки
+ * и наклона, вычисленных при генерации, а объекты {@link Color} берутся из небольшого кэша
+ * по значению ARGB (проверяется в {@code PaintAllocationTest}). Исключение — промахи
+ * кэша цветов: {@link Graphics2D#setColor} принимает только объект {@link Color},
+ * поэтому для цвета, которого нет в кэше, объект создается. Случайные 24-битные
+ * цвета генератора почти всегда промахиваются, и в строгом порядке такие сцены
+ * создают по объекту {@link Color} на фигуру; группировка по цветам палитры
+ * обходится 512 объектами. При группировке контуры групп создаются на каждый проход
+ * и растут вместе с количеством фигур в нем, но не больше {@link #MAX_BATCH_POINTS}
+ * вершин. Кроме того, сам конвейер Java2D создает объекты при отрисовке окружностей,
+ * многоугольников и сглаженных фигур.
+ * Объект не потокобезопасен.
+ */
+final class ShapePainter {
+
+    /** Фигуры, у которых обе стороны рамки на экране меньше этого размера, идут в карту плотности. */
+    static final double SUBPIXEL_SIZE = 1.0;
+    /** Допустимое отклонение ломаной параболы от кривой, в пикселях. */
+    static final double PARABOLA_TOLERANCE = 0.25;
+    /** Наибольшее количество отрезков ломаной параболы. */
+    static final int MAX_PARABOLA_STEPS = 64;
+    /** Количество бит на канал цвета в палитре группировки по цветам. */
+    static final int PALETTE_BITS = 3;
+    /** Количество цветов палитры группировки по цветам. */
+    static final int PALETTE_SIZE = 1 << 3 * PALETTE_BITS;
+    /** Количество вершин во всех группах, после которого группы рисуются и очищаются. */
+    private static final int MAX_BATCH_POINTS = 1 << 18;
+    /** Удаленность управляющих точек кубической дуги в четверть окружности, в радиусах. */
+    private static final double CIRCLE_CONTROL = 4 * (Math.sqrt(2) - 1) / 3;
+
+    private final Graphics2D g2;
+    /** Масштаб и сдвиг из координат сцены в пиксели устройства. */
+    private final double scaleX;
+    private final double scaleY;
+    private final double translateX;
+    private final double translateY;
+    /** Множитель кривизны параболы, дающий количество отрезков ломаной при текущем масштабе. */
+    private final double stepsPerCurvature;
+
+    /** Карты плотности потоков, переиспользуемые проходами отрисовки. */
+    private static final ThreadLocal<HeatMap> HEAT_MAPS = ThreadLocal.withInitial(HeatMap::new);
+
+    /** Карта плотности; {@code null}, если карта не ведется. */
+    private final HeatMap heat;
+
+    /** Подсказка отрисовки: порядок, в котором рисуются фигуры. */
+    static final RenderingHints.Key KEY_DRAW_ORDER = new DrawOrderKey();
+    /** Фигуры рисуются строго в порядке сцены, кроме карты плотности (по умолчанию). */
+    static final Object VALUE_ORDER_STRICT = "Strict shape order";
+    /** Фигуры группируются по цветам палитры и рисуются группами. */
+    static final Object VALUE_ORDER_BY_COLOR = "Shapes batched by palette color";
+
+    /** Признак группировки фигур по цветам палитры. */
+    private final boolean batched;
+    /** Контуры групп по индексу цвета палитры; создаются при первой фигуре группы. */
+    private Path2D.Float[] batches;
+    /** Цвета палитры; создаются при первой отрисовке группы. */
+    private Color[] palette;
+    /** Признаки непустых групп по индексу цвета палитры. */
+    private boolean[] inUse;
+    /** Индексы непустых групп в порядке появления и их количество. */
+    private int[] usedBatches;
+    private int usedCount;
+    /** Количество вершин во всех группах. */
+    private int batchedPoints;
+
+    /** Размер кэша цветов; степень двойки. */
+    private static final int COLOR_CACHE_SIZE = 1 << 10;
+
+    /** Рамка текущей фигуры. */
+    private final float[] box = new float[4];
+    /** Данные ломаной текущей параболы. */
+    private final float[] curve = new float[ShapeBuffer.CURVE_STRIDE];
+    /** Вершины многоугольников и ломаных. */
+    private final int[] xs = new int[Math.max(MAX_PARABOLA_STEPS, ShapeBuffer.PARABOLA_STEPS) + 1];
+    private final int[] ys = new int[xs.length];
+    /** Окружность текущей фигуры. */
+    private final Ellipse2D.Double ellipse = new Ellipse2D.Double();
+    /** Кэш цветов: ячейка выбирается по значению ARGB. */
+    private final Color[] colorCache = new Color[COLOR_CACHE_SIZE];
+    /** Цвет, установленный в контексте последним, в формате ARGB. */
+    private int currentArgb;
+    private boolean colorSet;
+
+    /**
+     * Создает отрисовщик для графического контекста с картой плотности текущего потока.
+     *
+     * @param g2 графический контекст с уже установленным преобразованием в координаты сцены
+     */
+    ShapePainter(Graphics2D g2) {
+        this(g2, HEAT_MAPS.get());
+    }
+
+    /**
+     * Создает отрисовщик для графического контекста с заданной картой плотности.
+     * Карта очищается; до {@link #finish()} ее не должен использовать другой отрисовщик.
+     *
+     * @param g2   графический контекст с уже установленным преобразованием в координаты сцены
+     * @param heat карта плотности или {@code null}, чтобы рисовать мелкие фигуры как обычно
+     */
+    ShapePainter(Graphics2D g2, HeatMap heat) {
+        this.g2 = g2;
+        AffineTransform tx = g2.getTransform();
+        this.scaleX = Math.abs(tx.getScaleX());
+        this.scaleY = Math.abs(tx.getScaleY());
+        this.translateX = tx.getTranslateX();
+        this.translateY = tx.getTranslateY();
+        this.stepsPerCurvature = Math.sqrt(scaleY / PARABOLA_TOLERANCE);
+
+        // карта плотности ведется по области отсечения; без нее размер области неизвестен
+        Shape clip = g2.getClip();
+        Rectangle area = clip == null ? null : tx.createTransformedShape(clip).getBounds()
+                .intersection(g2.getDeviceConfiguration().getBounds());
+        if (heat != null && area != null && !area.isEmpty()) {
+            heat.reset(area);
+            this.heat = heat;
+        } else {
+            this.heat = null;
+        }
+        this.batched = VALUE_ORDER_BY_COLOR.equals(g2.getRenderingHint(KEY_DRAW_ORDER));
+    }
+
+    /**
+     * Рисует фигуру из буфера.
+     *
+     * @param buffer буфер фигур
+     * @param index  индекс фигуры в буфере
+     */
+    void draw(ShapeBuffer buffer, int index) {
+        buffer.bounds(index, box);
+        double width = (box[2] - box[0]) * scaleX;
+        double height = (box[3] - box[1]) * scaleY;
+        if (width < SUBPIXEL_SIZE && height < SUBPIXEL_SIZE && heat != null) {
+            heat.add((int) Math.floor((box[0] + box[2]) / 2 * scaleX + translateX),
+                    (int) Math.floor((box[1] + box[3]) / 2 * scaleY + translateY),
+                    buffer.getColor(index));
+            return;
+        }
+        int steps = buffer.getKind() == ShapeKind.PARABOLA ? parabolaSteps(buffer, index, width) : 0;
+        if (batched) {
+            batch(buffer, index, steps);
+        } else {
+            paint(buffer, index, steps);
+        }
+    }
+
+    /**
+     * Рисует фигуру из буфера без учета уровня детализации.
+     *
+     * @param buffer буфер фигур
+     * @param index  индекс фигуры в буфере
+     * @param steps  количество отрезков ломаной, если фигура — парабола
+     */
+    void paint(ShapeBuffer buffer, int index, int steps) {
+        setColor(buffer.getColor(index));
+        switch (buffer.getKind()) {
+            case LINE:
+                g2.drawLine((int) buffer.get(index, 0), (int) buffer.get(index, 1),
+                        (int) buffer.get(index, 2), (int) buffer.get(index, 3));
+                break;
+            case CIRCLE: {
+                double r = buffer.get(index, 2);
+                ellipse.setFrame(buffer.get(index, 0) - r, buffer.get(index, 1) - r, 2 * r, 2 * r);
+                g2.draw(ellipse);
+                break;
+            }
+            case RECTANGLE:
+                g2.drawRect((int) buffer.get(index, 0), (int) buffer.get(index, 1),
+                        (int) buffer.get(index, 2), (int) buffer.get(index, 3));
+                break;
+            case TRIANGLE:
+            case TRAPEZOID: {
+                int n = buffer.getKind().getStride() / 2;
+                for (int k = 0; k < n; k++) {
+                    xs[k] = (int) buffer.get(index, 2 * k);
+                    ys[k] = (int) buffer.get(index, 2 * k + 1);
+                }
+                g2.drawPolygon(xs, ys, n);
+                break;
+            }
+            case PARABOLA: {
+                buffer.curve(index, curve);
+                double a = buffer.get(index, 0);
+                double x0 = buffer.get(index, 3);
+                // y(x + h) - y(x) = h(y'(x) + ah), а вторая разность постоянна: 2ah^2
+                double h = (buffer.get(index, 4) - x0) / steps;
+                double y = curve[0];
+                double dy = h * (curve[1] + a * h);
+                double ddy = 2 * a * h * h;
+                for (int k = 0; k <= steps; k++) {
+                    xs[k] = (int) (x0 + h * k);
+                    ys[k] = (int) y;
+                    y += dy;
+                    dy += ddy;
+                }
+                g2.drawPolyline(xs, ys, steps + 1);
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown shape kind: " + buffer.getKind());
+        }
+    }
+
+    /**
+     * Добавляет фигуру в контур группы ее цвета палитры. Координаты округляются
+     * так же, как в {@link #paint(ShapeBuffer, int, int)}.
+     */
+    private void batch(ShapeBuffer buffer, int index, int steps) {
+        if (batches == null) {
+            batches = new Path2D.Float[PALETTE_SIZE];
+            inUse = new boolean[PALETTE_SIZE];
+            usedBatches = new int[PALETTE_SIZE];
+        }
+        int slot = paletteIndex(buffer.getColor(index));
+        Path2D.Float path = batches[slot];
+        if (path == null) {
+            path = new Path2D.Float(Path2D.WIND_NON_ZERO, 64);
+            batches[slot] = path;
+        }
+        if (!inUse[slot]) {
+            inUse[slot] = true;
+            usedBatches[usedCount++] = slot;
+        }
+        int points;
+        switch (buffer.getKind()) {
+            case LINE:
+                path.moveTo((int) buffer.get(index, 0), (int) buffer.get(index, 1));
+                path.lineTo((int) buffer.get(index, 2), (int) buffer.get(index, 3));
+                points = 2;
+                break;
+            case CIRCLE: {
+                // четыре кубические дуги, как у Ellipse2D, но без объекта-обходчика контура
+                float cx = buffer.get(index, 0);
+                float cy = buffer.get(index, 1);
+                float r = buffer.get(index, 2);
+                float k = (float) (CIRCLE_CONTROL * r);
+                path.moveTo(cx + r, cy);
+                path.curveTo(cx + r, cy + k, cx + k, cy + r, cx, cy + r);
+                path.curveTo(cx - k, cy + r, cx - r, cy + k, cx - r, cy);
+                path.curveTo(cx - r, cy - k, cx - k, cy - r, cx, cy - r);
+                path.curveTo(cx + k, cy - r, cx + r, cy - k, cx + r, cy);
+                path.closePath();
+                points = 13;
+                break;
+            }
+            case RECTANGLE: {
+                int x = (int) buffer.get(index, 0);
+                int y = (int) buffer.get(index, 1);
+                int w = (int) buffer.get(index, 2);
+                int h = (int) buffer.get(index, 3);
+                path.moveTo(x, y);
+                path.lineTo(x + w, y);
+                path.lineTo(x + w, y + h);
+                path.lineTo(x, y + h);
+                path.closePath();
+                points = 4;
+                break;
+            }
+            case TRIANGLE:
+            case TRAPEZOID: {
+                int n = buffer.getKind().getStride() / 2;
+                path.moveTo((int) buffer.get(index, 0), (int) buffer.get(index, 1));
+                for (int k = 1; k < n; k++) {
+                    path.lineTo((int) buffer.get(index, 2 * k), (int) buffer.get(index, 2 * k + 1));
+                }
+                path.closePath();
+                points = n;
+                break;
+            }
+            case PARABOLA: {
+                buffer.curve(index, curve);
+                double a = buffer.get(index, 0);
+                double x0 = buffer.get(index, 3);
+                double h = (buffer.get(index, 4) - x0) / steps;
+                double y = curve[0];
+                double dy = h * (curve[1] + a * h);
+                double ddy = 2 * a * h * h;
+                path.moveTo((int) x0, (int) y);
+                for (int k = 1; k <= steps; k++) {
+                    y += dy;
+                    dy += ddy;
+                    path.lineTo((int) (x0 + h * k), (int) y);
+                }
+                points = steps + 1;
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown shape kind: " + buffer.getKind());
+        }
+        batchedPoints += points;
+        if (batchedPoints > MAX_BATCH_POINTS) {
+            flushBatches();
+        }
+    }
+
+    /**
+     * Рисует накопленные группы в порядке их появления и очищает их.
+     * Контуры очищаются без освобождения памяти и переиспользуются.
+     */
+    private void flushBatches() {
+        if (palette == null && usedCount > 0) {
+            palette = new Color[PALETTE_SIZE];
+        }
+        for (int i = 0; i < usedCount; i++) {
+            int slot = usedBatches[i];
+            Color color = palette[slot];
+            if (color == null) {
+                color = new Color(paletteColor(slot));
+                palette[slot] = color;
+            }
+            g2.setColor(color);
+            g2.draw(batches[slot]);
+            batches[slot].reset();
+            inUse[slot] = false;
+        }
+        usedCount = 0;
+        batchedPoints = 0;
+        colorSet = false;
+    }
+
+    /**
+     * Возвращает индекс цвета палитры: старшие {@link #PALETTE_BITS} бит каждого канала.
+     * Прозрачность не учитывается, так как генератор создает непрозрачные цвета.
+     */
+    static int paletteIndex(int argb) {
+        int shift = 8 - PALETTE_BITS;
+        int mask = (1 << PALETTE_BITS) - 1;
+        return (argb >> 16 + shift & mask) << 2 * PALETTE_BITS
+                | (argb >> 8 + shift & mask) << PALETTE_BITS
+                | (argb >> shift & mask);
+    }
+
+    /**
+     * Возвращает цвет палитры в формате RGB: середину диапазона цветов, попадающих в индекс.
+     */
+    static int paletteColor(int slot) {
+        int shift = 8 - PALETTE_BITS;
+        int mask = (1 << PALETTE_BITS) - 1;
+        int half = 1 << shift - 1;
+        int r = (slot >> 2 * PALETTE_BITS & mask) << shift | half;
+        int g = (slot >> PALETTE_BITS & mask) << shift | half;
+        int b = (slot & mask) << shift | half;
+        return r << 16 | g << 8 | b;
+    }
+
+    /**
+     * Устанавливает цвет в контексте, если он отличается от текущего.
+     */
+    private void setColor(int argb) {
+        if (colorSet && argb == currentArgb) {
+            return;
+        }
+        int slot = (argb ^ argb >>> 10 ^ argb >>> 20) & (COLOR_CACHE_SIZE - 1);
+        Color color = colorCache[slot];
+        if (color == null || color.getRGB() != argb) {
+            color = new Color(argb, true);
+            colorCache[slot] = color;
+        }
+        g2.setColor(color);
+        currentArgb = argb;
+        colorSet = true;
+    }
+
+    /**
+     * Рисует накопленные группы фигур и карту плотности. Вызывается после всех фигур прохода;
+     * после этого отрисовщиком можно рисовать следующий проход в тот же контекст.
+     */
+    void finish() {
+        if (usedCount > 0) {
+            flushBatches();
+        }
+        if (heat != null) {
+            heat.drawTo(g2);
+        }
+    }
+
+    /**
+     * Подбирает количество отрезков ломаной параболы y = ax^2 + bx + c на [x0, x1].
+     * Отклонение хорды длины h от параболы равно |a| h^2 / 4, отсюда наибольший шаг
+     * по X при заданном допуске (см. {@link ShapeBuffer#curve(int, float[])});
+     * шаг не делается короче двух пикселей.
+     *
+     * @param width ширина параболы на экране, в пикселях
+     */
+    private int parabolaSteps(ShapeBuffer buffer, int index, double width) {
+        buffer.curve(index, curve);
+        int steps = (int) Math.ceil(curve[2] * stepsPerCurvature);
+        int byWidth = (int) Math.ceil(width / 2);
+        return Math.max(1, Math.min(steps, Math.min(byWidth, MAX_PARABOLA_STEPS)));
+    }
+
+    /**
+     * Ключ подсказки {@link #KEY_DRAW_ORDER}.
+     */
+    private static final class DrawOrderKey extends RenderingHints.Key {
+        DrawOrderKey() {
+            super(0);
+        }
+
+        @Override
+        public boolean isCompatibleValue(Object value) {
+            return value == VALUE_ORDER_STRICT || value == VALUE_ORDER_BY_COLOR;
+        }
+    }
+}
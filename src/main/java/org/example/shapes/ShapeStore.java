@@ -0,0 +1,186 @@
+package org.example.shapes;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сцена из сгенерированных фигур: по одному колоночному буферу на каждый тип фигур
+ * плюс необязательный список пользовательских фигур {@link DrawableShape}.
+ * Фигуры рисуются в порядке типов {@link ShapeKind}, пользовательские — последними.
+ * <p>
+ * После заполнения буферов по сцене строится {@link SpatialIndex}: отрисовка области
+ * и поиск фигур под точкой обращаются только к фигурам, попадающим в нужные ячейки.
+ */
+public final class ShapeStore {
+
+    /** Буферы фигур по типам. */
+    private final Map<ShapeKind, ShapeBuffer> buffers = new EnumMap<>(ShapeKind.class);
+    /** Пользовательские фигуры, не входящие в стандартные типы. */
+    private final List<DrawableShape> customShapes = new ArrayList<>();
+    /** Пространственный индекс стандартных фигур; {@code null}, пока не построен. */
+    private SpatialIndex index;
+
+    /**
+     * Создает пустую сцену.
+     */
+    public ShapeStore() {
+    }
+
+    /**
+     * Возвращает буфер фигур заданного типа, создавая его при необходимости.
+     *
+     * @param kind     тип фигур
+     * @param capacity ожидаемое количество фигур (используется при создании буфера)
+     * @return буфер фигур
+     */
+    public ShapeBuffer buffer(ShapeKind kind, int capacity) {
+        ShapeBuffer buffer = buffers.get(kind);
+        if (buffer == null) {
+            buffer = new ShapeBuffer(kind, capacity);
+            buffers.put(kind, buffer);
+            index = null;
+        }
+        return buffer;
+    }
+
+    /**
+     * Добавляет готовый буфер фигур, например загруженный из файла сцены.
+     *
+     * @param buffer буфер фигур
+     * @throws IllegalStateException если буфер фигур этого типа уже есть
+     */
+    void addBuffer(ShapeBuffer buffer) {
+        if (buffers.containsKey(buffer.getKind())) {
+            throw new IllegalStateException("Duplicate buffer for " + buffer.getKind());
+        }
+        buffers.put(buffer.getKind(), buffer);
+        index = null;
+    }
+
+    /** @return буферы фигур в порядке отрисовки */
+    public Collection<ShapeBuffer> buffers() {
+        return Collections.unmodifiableCollection(buffers.values());
+    }
+
+    /**
+     * Добавляет пользовательскую фигуру, которая будет нарисована поверх стандартных.
+     *
+     * @param shape пользовательская фигура
+     */
+    public void addCustomShape(DrawableShape shape) {
+        customShapes.add(shape);
+    }
+
+    /** @return пользовательские фигуры */
+    public List<DrawableShape> customShapes() {
+        return Collections.unmodifiableList(customShapes);
+    }
+
+    /**
+     * Строит пространственный индекс по текущему содержимому буферов.
+     * Ограничивающие прямоугольники фигур должны быть уже вычислены;
+     * после изменения буферов индекс нужно построить заново.
+     *
+     * @param minX     минимальное значение X области
+     * @param maxX     максимальное значение X области
+     * @param minY     минимальное значение Y области
+     * @param maxY     максимальное значение Y области
+     * @param cellSize размер ячейки индекса; 0 — размер по умолчанию
+     */
+    public void buildIndex(double minX, double maxX, double minY, double maxY, double cellSize) {
+        index = SpatialIndex.build(buffers.values(), minX, maxX, minY, maxY, cellSize);
+    }
+
+    /** @return пространственный индекс или {@code null}, если он не построен */
+    public SpatialIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Рисует фигуры, ограничивающие прямоугольники которых пересекают область,
+     * и все пользовательские фигуры. Детализация стандартных фигур зависит
+     * от масштаба контекста (см. {@link ShapePainter}).
+     *
+     * @param g2   графический контекст
+     * @param area область в координатах сцены; {@code null} — рисовать все фигуры
+     */
+    public void draw(Graphics2D g2, Rectangle2D area) {
+        ShapePainter painter = new ShapePainter(g2);
+        if (area != null && index != null) {
+            index.draw(painter, index.query(area));
+        } else {
+            float[] box = new float[4];
+            for (ShapeBuffer buffer : buffers.values()) {
+                for (int i = 0, n = buffer.size(); i < n; i++) {
+                    if (area != null) {
+                        buffer.bounds(i, box);
+                        if (box[0] > area.getMaxX() || box[2] < area.getMinX()
+                                || box[1] > area.getMaxY() || box[3] < area.getMinY()) {
+                            continue;
+                        }
+                    }
+                    painter.draw(buffer, i);
+                }
+            }
+        }
+        painter.finish();
+        for (DrawableShape s : customShapes) {
+            s.draw(g2);
+        }
+    }
+
+    /**
+     * Вычисляет прямоугольник, охватывающий все стандартные фигуры сцены.
+     *
+     * @return прямоугольник в координатах сцены или {@code null}, если фигур нет
+     */
+    public Rectangle2D getBounds() {
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        float[] box = new float[4];
+        for (ShapeBuffer buffer : buffers.values()) {
+            for (int i = 0, n = buffer.size(); i < n; i++) {
+                buffer.bounds(i, box);
+                minX = Math.min(minX, box[0]);
+                minY = Math.min(minY, box[1]);
+                maxX = Math.max(maxX, box[2]);
+                maxY = Math.max(maxY, box[3]);
+            }
+        }
+        if (minX > maxX) {
+            return null;
+        }
+        return new Rectangle2D.Float(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Возвращает память кучи, занятую буферами и индексом сцены
+     * (без пользовательских фигур).
+     *
+     * @return размер в байтах
+     */
+    public long heapBytes() {
+        long bytes = index != null ? index.heapBytes() : 0;
+        for (ShapeBuffer b : buffers.values()) {
+            bytes += b.heapBytes();
+        }
+        return bytes;
+    }
+
+    /** @return общее количество фигур в сцене */
+    public int size() {
+        int total = customShapes.size();
+        for (ShapeBuffer b : buffers.values()) {
+            total += b.size();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,346 @@
+package org.example.shapes;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Пространственный индекс фигур сцены — равномерная сетка ячеек.
+ * <p>
+ * Каждая фигура получает сквозной номер: фигуры буферов нумеруются подряд
+ * в порядке отрисовки, поэтому сортировка номеров восстанавливает порядок наложения.
+ * Номер фигуры записывается во все ячейки, которые задевает ее ограничивающий
+ * прямоугольник. Ячейки хранятся в сжатом виде: общий массив номеров
+ * и массив смещений начала каждой ячейки.
+ * <p>
+ * Фигуры, задевающие слишком много ячеек (например, параболы во всю ширину),
+ * хранятся в отдельном списке и возвращаются всеми запросами, где проходят по границам,
+ * чтобы не раздувать индекс.
+ */
+public final class SpatialIndex {
+
+    /** Размер ячейки по умолчанию, если шаг сетки не задан. */
+    public static final double DEFAULT_CELL_SIZE = 64;
+
+    /** Максимальное количество ячеек; при большей области ячейки укрупняются. */
+    static final int MAX_CELLS = 1 << 20;
+    /** Фигуры, задевающие больше ячеек, попадают в список крупных. */
+    private static final int MAX_CELLS_PER_SHAPE = 64;
+
+    /** Буферы фигур в порядке отрисовки. */
+    private final ShapeBuffer[] buffers;
+    /** Сквозной номер первой фигуры каждого буфера; последний элемент — общее количество. */
+    private final int[] starts;
+
+    /** Левый верхний угол сетки ячеек. */
+    private final double originX;
+    private final double originY;
+    /** Размер ячейки. */
+    private final double cellSize;
+    /** Количество ячеек по горизонтали и вертикали. */
+    private final int cols;
+    private final int rows;
+
+    /** Смещения начала каждой ячейки в {@link #entries}; длина cols*rows + 1. */
+    private final int[] cellStart;
+    /** Номера фигур по ячейкам. */
+    private final int[] entries;
+    /** Номера крупных фигур. */
+    private final int[] large;
+
+    private SpatialIndex(ShapeBuffer[] buffers, int[] starts, double originX, double originY,
+                         double cellSize, int cols, int rows,
+                         int[] cellStart, int[] entries, int[] large) {
+        this.buffers = buffers;
+        this.starts = starts;
+        this.originX = originX;
+        this.originY = originY;
+        this.cellSize = cellSize;
+        this.cols = cols;
+        this.rows = rows;
+        this.cellStart = cellStart;
+        this.entries = entries;
+        this.large = large;
+    }
+
+    /**
+     * Строит индекс по буферам фигур с уже вычисленными ограничивающими прямоугольниками.
+     * Фигуры за пределами области относятся к крайним ячейкам.
+     *
+     * @param bufferList буферы в порядке отрисовки
+     * @param minX       минимальное значение X области
+     * @param maxX       максимальное значение X области
+     * @param minY       минимальное значение Y области
+     * @param maxY       максимальное значение Y области
+     * @param cellSize   желаемый размер ячейки; 0 — размер по умолчанию
+     * @return индекс
+     */
+    public static SpatialIndex build(Collection<ShapeBuffer> bufferList,
+                                     double minX, double maxX, double minY, double maxY,
+                                     double cellSize) {
+        ShapeBuffer[] buffers = bufferList.toArray(new ShapeBuffer[0]);
+        int[] starts = new int[buffers.length + 1];
+        for (int b = 0; b < buffers.length; b++) {
+            starts[b + 1] = starts[b] + buffers[b].size();
+        }
+
+        double width = Math.max(maxX - minX, 1);
+        double height = Math.max(maxY - minY, 1);
+        double cell = cellSize > 0 ? cellSize : DEFAULT_CELL_SIZE;
+        // в вытянутой области ограничения площади ячейки мало: по длинной стороне
+        // ячеек не больше MAX_CELLS, а из-за округления вверх произведение может
+        // превысить MAX_CELLS, тогда ячейки укрупняются дальше
+        cell = Math.max(cell, Math.sqrt(width * height / MAX_CELLS));
+        cell = Math.max(cell, Math.max(width, height) / MAX_CELLS);
+        int cols = (int) Math.ceil(width / cell);
+        int rows = (int) Math.ceil(height / cell);
+        while ((long) cols * rows > MAX_CELLS) {
+            cell *= 1.25;
+            cols = (int) Math.ceil(width / cell);
+            rows = (int) Math.ceil(height / cell);
+        }
+
+        // первый проход: количество номеров в каждой ячейке
+        int[] cellStart = new int[cols * rows + 1];
+        int largeCount = 0;
+        float[] box = new float[4];
+        int[] range = new int[4];
+        for (ShapeBuffer buffer : buffers) {
+            for (int i = 0, n = buffer.size(); i < n; i++) {
+                buffer.bounds(i, box);
+                cellRange(box[0], box[1], box[2], box[3], minX, minY, cell, cols, rows, range);
+                if (cellCount(range) > MAX_CELLS_PER_SHAPE) {
+                    largeCount++;
+                    continue;
+                }
+                for (int r = range[1]; r <= range[3]; r++) {
+                    for (int c = range[0]; c <= range[2]; c++) {
+                        cellStart[r * cols + c + 1]++;
+                    }
+                }
+            }
+        }
+        for (int k = 0; k < cols * rows; k++) {
+            cellStart[k + 1] += cellStart[k];
+        }
+
+        // второй проход: раскладка номеров по ячейкам в порядке возрастания
+        int[] entries = new int[cellStart[cols * rows]];
+        int[] fill = Arrays.copyOf(cellStart, cols * rows);
+        int[] large = new int[largeCount];
+        int largeFill = 0;
+        for (int b = 0; b < buffers.length; b++) {
+            ShapeBuffer buffer = buffers[b];
+            for (int i = 0, n = buffer.size(); i < n; i++) {
+                buffer.bounds(i, box);
+                cellRange(box[0], box[1], box[2], box[3], minX, minY, cell, cols, rows, range);
+                int id = starts[b] + i;
+                if (cellCount(range) > MAX_CELLS_PER_SHAPE) {
+                    large[largeFill++] = id;
+                    continue;
+                }
+                for (int r = range[1]; r <= range[3]; r++) {
+                    for (int c = range[0]; c <= range[2]; c++) {
+                        entries[fill[r * cols + c]++] = id;
+                    }
+                }
+            }
+        }
+        return new SpatialIndex(buffers, starts, minX, minY, cell, cols, rows,
+                cellStart, entries, large);
+    }
+
+    /** @return общее количество проиндексированных фигур */
+    public int size() {
+        return starts[buffers.length];
+    }
+
+    /** @return память кучи, занятая массивами индекса, в байтах */
+    public long heapBytes() {
+        return 4L * (starts.length + cellStart.length + entries.length + large.length);
+    }
+
+    /** @return буфер фигуры с заданным сквозным номером */
+    public ShapeBuffer bufferOf(int id) {
+        return buffers[bufferIndex(id)];
+    }
+
+    /** @return индекс фигуры с заданным сквозным номером внутри ее буфера */
+    public int indexOf(int id) {
+        return id - starts[bufferIndex(id)];
+    }
+
+    /**
+     * Возвращает номера фигур, чьи ограничивающие прямоугольники пересекают область.
+     * Номера отсортированы в порядке отрисовки и не повторяются.
+     *
+     * @param area область в координатах сцены
+     * @return сквозные номера фигур
+     */
+    public int[] query(Rectangle2D area) {
+        double x0 = area.getMinX();
+        double y0 = area.getMinY();
+        double x1 = area.getMaxX();
+        double y1 = area.getMaxY();
+
+        int[] range = new int[4];
+        cellRange(x0, y0, x1, y1, originX, originY, cellSize, cols, rows, range);
+
+        int capacity = large.length;
+        for (int r = range[1]; r <= range[3]; r++) {
+            capacity += cellStart[r * cols + range[2] + 1] - cellStart[r * cols + range[0]];
+        }
+        int[] result = new int[capacity];
+        int n = 0;
+        float[] box = new float[4];
+        for (int r = range[1]; r <= range[3]; r++) {
+            int from = cellStart[r * cols + range[0]];
+            int to = cellStart[r * cols + range[2] + 1];
+            for (int k = from; k < to; k++) {
+                int id = entries[k];
+                if (intersects(id, x0, y0, x1, y1, box)) {
+                    result[n++] = id;
+                }
+            }
+        }
+        for (int id : large) {
+            if (intersects(id, x0, y0, x1, y1, box)) {
+                result[n++] = id;
+            }
+        }
+
+        // фигура может лежать в нескольких ячейках: сортировка и удаление повторов
+        Arrays.sort(result, 0, n);
+        int unique = 0;
+        for (int k = 0; k < n; k++) {
+            if (unique == 0 || result[unique - 1] != result[k]) {
+                result[unique++] = result[k];
+            }
+        }
+        return Arrays.copyOf(result, unique);
+    }
+
+    /**
+     * Находит фигуры, контур которых проходит рядом с точкой.
+     *
+     * @param x         координата X в координатах сцены
+     * @param y         координата Y в координатах сцены
+     * @param tolerance допустимое расстояние от контура
+     * @return сквозные номера найденных фигур в порядке отрисовки (верхняя — последняя)
+     */
+    public int[] hitTest(double x, double y, double tolerance) {
+        int[] candidates = query(new Rectangle2D.Double(
+                x - tolerance, y - tolerance, 2 * tolerance, 2 * tolerance));
+        int n = 0;
+        for (int id : candidates) {
+            if (bufferOf(id).hits(indexOf(id), x, y, tolerance)) {
+                candidates[n++] = id;
+            }
+        }
+        return Arrays.copyOf(candidates, n);
+    }
+
+    /**
+     * Рисует фигуры с заданными номерами.
+     *
+     * @param g2  графический контекст
+     * @param ids сквозные номера фигур, отсортированные по возрастанию
+     */
+    public void draw(Graphics2D g2, int[] ids) {
+        ShapePainter painter = new ShapePainter(g2);
+        draw(painter, ids);
+        painter.finish();
+    }
+
+    /**
+     * Рисует фигуры с заданными номерами в рамках прохода отрисовки.
+     *
+     * @param painter отрисовщик прохода
+     * @param ids     сквозные номера фигур, отсортированные по возрастанию
+     */
+    void draw(ShapePainter painter, int[] ids) {
+        int b = 0;
+        for (int id : ids) {
+            // номера отсортированы, поэтому буфер только сдвигается вперед
+            while (id >= starts[b + 1]) {
+                b++;
+            }
+            painter.draw(buffers[b], id - starts[b]);
+        }
+    }
+
+    /**
+     * Собирает список фигур по сквозным номерам.
+     *
+     * @param ids сквозные номера
+     * @return пары (буфер, индекс) в том же порядке
+     */
+    public List<Hit> resolve(int[] ids) {
+        List<Hit> hits = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            hits.add(new Hit(bufferOf(id), indexOf(id)));
+        }
+        return hits;
+    }
+
+    private boolean intersects(int id, double x0, double y0, double x1, double y1, float[] box) {
+        bufferOf(id).bounds(indexOf(id), box);
+        return box[0] <= x1 && box[2] >= x0 && box[1] <= y1 && box[3] >= y0;
+    }
+
+    private int bufferIndex(int id) {
+        int b = Arrays.binarySearch(starts, id);
+        if (b < 0) {
+            return -b - 2;
+        }
+        // у пустых буферов одинаковые начала: нужен последний буфер с этим началом
+        while (b + 1 < buffers.length && starts[b + 1] == id) {
+            b++;
+        }
+        return b;
+    }
+
+    /**
+     * Вычисляет диапазон ячеек [c0, r0, c1, r1] для прямоугольника, прижимая его к сетке.
+     */
+    private static void cellRange(double x0, double y0, double x1, double y1,
+                                  double originX, double originY, double cell,
+                                  int cols, int rows, int[] out) {
+        out[0] = clamp((int) Math.floor((x0 - originX) / cell), cols);
+        out[1] = clamp((int) Math.floor((y0 - originY) / cell), rows);
+        out[2] = clamp((int) Math.floor((x1 - originX) / cell), cols);
+        out[3] = clamp((int) Math.floor((y1 - originY) / cell), rows);
+    }
+
+    private static int clamp(int value, int count) {
+        return Math.max(0, Math.min(count - 1, value));
+    }
+
+    private static int cellCount(int[] range) {
+        return (range[2] - range[0] + 1) * (range[3] - range[1] + 1);
+    }
+
+    /**
+     * Фигура, найденная запросом к индексу.
+     */
+    public static final class Hit {
+        /** Буфер, в котором хранится фигура. */
+        private final ShapeBuffer buffer;
+        /** Индекс фигуры в буфере. */
+        private final int index;
+
+        Hit(ShapeBuffer buffer, int index) {
+            this.buffer = buffer;
+            this.index = index;
+        }
+
+        /** @return буфер, в котором хранится фигура */
+        public ShapeBuffer getBuffer() { return buffer; }
+
+        /** @return индекс фигуры в буфере */
+        public int getIndex() { return index; }
+    }
+}
@@ -0,0 +1,190 @@
+package org.example.shapes;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Потоковая отрисовка: сцена генерируется блоками и сразу рисуется в изображение,
+ * не сохраняясь целиком (см. {@link RandomShapeGenerator#generateStream}).
+ * <p>
+ * В памяти находятся только изображение, буферы одной волны блоков и не больше
+ * одной карты плотности мелких фигур на поток отрисовки: отрисовщик каждого блока
+ * берет карту своего потока (см. {@link ShapePainter}), а ее размер ограничен
+ * независимо от размера изображения (см. {@link HeatMap#MAX_CELLS}). Поэтому
+ * сцены из сотен миллионов фигур рисуются в куче постоянного размера. Зато
+ * нарисованное нельзя перерисовать в другом масштабе или проверить попадание
+ * курсора в фигуру: для этого нужно сгенерировать сцену заново.
+ * <p>
+ * Изображение делится на горизонтальные полосы, и каждый блок рисуется во все
+ * полосы параллельно в пуле потоков; следующий блок начинается, когда все полосы
+ * готовы. Блоки рисуются в порядке генерации, поэтому результат совпадает
+ * с отрисовкой всей сцены.
+ */
+public final class StreamRenderer {
+
+    /** Запас вокруг изображения на толщину линии и сглаживание, в пикселях. */
+    private static final double STROKE_PAD = 2;
+
+    /** Генератор блоков фигур. */
+    private final RandomShapeGenerator generator;
+    /** Пул потоков, в котором рисуются полосы. */
+    private final ExecutorService executor;
+    /** Количество полос. */
+    private final int bands;
+    /** Признак сглаживания фигур. */
+    private volatile boolean antialiasing = true;
+    /** Признак отрисовки фигур группами по цветам палитры. */
+    private volatile boolean colorBatching;
+
+    /**
+     * Создает отрисовщик с заданным генератором и пулом потоков.
+     *
+     * @param generator генератор; его пул используется для генерации блоков
+     * @param executor  пул потоков для отрисовки полос
+     * @param bands     количество полос; 1 — рисовать в текущем потоке
+     */
+    public StreamRenderer(RandomShapeGenerator generator, ExecutorService executor, int bands) {
+        if (bands <= 0) {
+            throw new IllegalArgumentException("Band count must be positive: " + bands);
+        }
+        this.generator = generator;
+        this.executor = executor;
+        this.bands = bands;
+    }
+
+    /**
+     * Включает или выключает сглаживание фигур (по умолчанию включено).
+     */
+    public void setAntialiasing(boolean antialiasing) {
+        this.antialiasing = antialiasing;
+    }
+
+    /**
+     * Включает или выключает отрисовку фигур группами по цветам палитры
+     * (по умолчанию выключена, см. {@link ShapePainter#VALUE_ORDER_BY_COLOR}).
+     */
+    public void setColorBatching(boolean colorBatching) {
+        this.colorBatching = colorBatching;
+    }
+
+    /**
+     * Генерирует сцену по параметрам и рисует ее в изображение.
+     *
+     * @param params     параметры генерации
+     * @param target     итоговое изображение
+     * @param transform  преобразование из координат сцены в пиксели изображения
+     *                   (допускаются только масштаб и сдвиг)
+     * @param background цвет фона или {@code null}, чтобы не закрашивать изображение
+     * @param underlay   слой, рисуемый под фигурами (например, сетка), или {@code null}
+     * @param progress   получатель уже нарисованных порций или {@code null};
+     *                   вызывается в текущем потоке и может прервать отрисовку
+     * @return {@code true}, если нарисованы все фигуры
+     */
+    public boolean render(InputParameters params, BufferedImage target, AffineTransform transform,
+                          Color background, DrawableShape underlay,
+                          RandomShapeGenerator.BatchConsumer progress) {
+        int width = target.getWidth();
+        int height = target.getHeight();
+        int count = Math.min(bands, height);
+        Graphics2D[] graphics = new Graphics2D[count];
+        Rectangle2D[] areas = new Rectangle2D[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                int y0 = height * i / count;
+                int y1 = height * (i + 1) / count;
+                graphics[i] = band(target, transform, background, underlay, y0, y1);
+                // фигуры за краем полосы пропускаются по ограничивающим прямоугольникам
+                areas[i] = toScene(transform, 0, y0, width, y1 - y0);
+            }
+            List<Future<?>> tasks = new ArrayList<>(count);
+            return generator.generateStream(params, (batch, generated, total) -> {
+                if (count == 1) {
+                    batch.draw(graphics[0], areas[0]);
+                } else {
+                    drawBands(batch, graphics, areas, tasks);
+                }
+                return progress == null || progress.accept(batch, generated, total);
+            });
+        } finally {
+            for (Graphics2D g2 : graphics) {
+                if (g2 != null) {
+                    g2.dispose();
+                }
+            }
+        }
+    }
+
+    /**
+     * Готовит контекст полосы [y0, y1) изображения: фон, преобразование, подсказки и слой.
+     */
+    private Graphics2D band(BufferedImage target, AffineTransform transform, Color background,
+                           DrawableShape underlay, int y0, int y1) {
+        Graphics2D g2 = target.createGraphics();
+        g2.clipRect(0, y0, target.getWidth(), y1 - y0);
+        if (background != null) {
+            g2.setColor(background);
+            g2.fillRect(0, y0, target.getWidth(), y1 - y0);
+        }
+        g2.transform(transform);
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing
+                ? RenderingHints.VALUE_ANTIALIAS_ON
+                : RenderingHints.VALUE_ANTIALIAS_OFF);
+        g2.setRenderingHint(ShapePainter.KEY_DRAW_ORDER, colorBatching
+                ? ShapePainter.VALUE_ORDER_BY_COLOR
+                : ShapePainter.VALUE_ORDER_STRICT);
+        if (underlay != null) {
+            underlay.draw(g2);
+        }
+        return g2;
+    }
+
+    /**
+     * Рисует порцию во все полосы параллельно и ждет окончания.
+     */
+    private void drawBands(ShapeStore batch, Graphics2D[] graphics, Rectangle2D[] areas,
+                           List<Future<?>> tasks) {
+        tasks.clear();
+        for (int i = 0; i < graphics.length; i++) {
+            Graphics2D g2 = graphics[i];
+            Rectangle2D area = areas[i];
+            tasks.add(executor.submit(() -> batch.draw(g2, area)));
+        }
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelAll(tasks);
+        } catch (ExecutionException e) {
+            cancelAll(tasks);
+            throw new IllegalStateException("Band rendering failed", e.getCause());
+        }
+    }
+
+    /**
+     * Переводит прямоугольник в пикселях (с запасом на толщину линии) в координаты сцены.
+     */
+    private static Rectangle2D toScene(AffineTransform transform, int x, int y, int w, int h) {
+        double sx = transform.getScaleX();
+        double sy = transform.getScaleY();
+        double tx = transform.getTranslateX();
+        double ty = transform.getTranslateY();
+        return new Rectangle2D.Double(
+                (x - STROKE_PAD - tx) / sx, (y - STROKE_PAD - ty) / sy,
+                (w + 2 * STROKE_PAD) / sx, (h + 2 * STROKE_PAD) / sy);
+    }
+
+    private static void cancelAll(List<? extends Future<?>> futures) {
+        for (Future<?> f : futures) {
+            f.cancel(true);
+        }
+    }
+}
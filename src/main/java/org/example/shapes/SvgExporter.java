@@ -0,0 +1,498 @@
+package org.example.shapes;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Потоковый экспорт сцены в SVG (или сжатый SVGZ) без растеризации.
+ * <p>
+ * Сцена не хранится: она генерируется блоками через
+ * {@link RandomShapeGenerator#generateStream} и каждый блок сразу пишется в файл,
+ * поэтому память не зависит от количества фигур, а скорость ограничена диском
+ * (или сжатием). Текст собирается в собственном байтовом буфере
+ * {@link #BUFFER_SIZE}: в SVG только символы ASCII, и кодировщик символов не нужен.
+ * <p>
+ * Чтобы файл был компактным:
+ * <ul>
+ *   <li>подряд идущие фигуры одного цвета пишутся одним элементом {@code <path>};
+ *       при группировке по цветам (см. {@link #setColorBatching(boolean)}) цвета
+ *       сводятся к палитре {@link ShapePainter}, и в пределах блока генерации
+ *       фигуры одного цвета палитры собираются в один {@code <path>} — порядок
+ *       наложения фигур разных цветов внутри блока при этом не сохраняется;</li>
+ *   <li>числа пишутся не длиннее двух знаков после точки, без лишних нулей
+ *       и разделителей, вершины многоугольников — относительными командами;</li>
+ *   <li>окружности пишутся двумя дугами, параболы — одной квадратичной кривой Безье,
+ *       которая совпадает с параболой точно.</li>
+ * </ul>
+ * Координаты округляются так же, как при отрисовке на панели; фигуры обводятся
+ * линией толщиной в единицу координат без заливки.
+ */
+public final class SvgExporter {
+
+    /** Размер буфера вывода, в байтах. */
+    static final int BUFFER_SIZE = 1 << 16;
+    /** Расширение имени файла, при котором вывод сжимается gzip. */
+    public static final String SVGZ_SUFFIX = ".svgz";
+
+    /** Генератор блоков фигур. */
+    private final RandomShapeGenerator generator;
+    /** Признак группировки фигур по цветам палитры. */
+    private volatile boolean colorBatching;
+
+    /**
+     * Создает экспорт с заданным генератором.
+     *
+     * @param generator генератор; его пул используется для генерации блоков
+     */
+    public SvgExporter(RandomShapeGenerator generator) {
+        this.generator = generator;
+    }
+
+    /**
+     * Включает или выключает группировку фигур по цветам палитры (по умолчанию выключена).
+     */
+    public void setColorBatching(boolean colorBatching) {
+        this.colorBatching = colorBatching;
+    }
+
+    /**
+     * Генерирует сцену и записывает ее в файл. Файл с расширением {@link #SVGZ_SUFFIX}
+     * сжимается gzip.
+     *
+     * @param params параметры генерации
+     * @param file   путь к файлу
+     * @return {@code true}, если записаны все фигуры
+     * @throws IOException при ошибке записи
+     */
+    public boolean export(InputParameters params, Path file) throws IOException {
+        boolean gzip = file.getFileName().toString().endsWith(SVGZ_SUFFIX);
+        try (OutputStream out = gzip
+                ? new FastGzipOutputStream(Files.newOutputStream(file))
+                : Files.newOutputStream(file)) {
+            return export(params, out, null);
+        }
+    }
+
+    /**
+     * Генерирует сцену и записывает ее в поток. Поток не закрывается.
+     *
+     * @param params   параметры генерации
+     * @param out      поток вывода
+     * @param progress получатель записанных порций или {@code null};
+     *                 вызывается в текущем потоке и может прервать экспорт
+     * @return {@code true}, если записаны все фигуры; иначе документ все равно закрывается
+     * @throws IOException при ошибке записи
+     */
+    public boolean export(InputParameters params, OutputStream out,
+                          RandomShapeGenerator.BatchConsumer progress) throws IOException {
+        SvgWriter svg = new SvgWriter(out, colorBatching);
+        try {
+            svg.begin(params);
+            boolean complete = generator.generateStream(params, (batch, generated, total) -> {
+                for (ShapeBuffer buffer : batch.buffers()) {
+                    svg.shapes(buffer);
+                }
+                return progress == null || progress.accept(batch, generated, total);
+            });
+            svg.end();
+            return complete;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Сжатие gzip с наименьшим уровнем: SVG сжимается хорошо и на нем, а запись
+     * остается близкой к скорости диска.
+     */
+    private static final class FastGzipOutputStream extends GZIPOutputStream {
+        FastGzipOutputStream(OutputStream out) throws IOException {
+            super(new BufferedOutputStream(out, BUFFER_SIZE), BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+
+    /**
+     * Запись документа SVG в байтовый буфер. Ошибки записи в поток
+     * передаются как {@link UncheckedIOException}, чтобы пройти через получателя порций.
+     */
+    private static final class SvgWriter {
+        private final OutputStream out;
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private int pos;
+        /** Признак группировки фигур по цветам палитры. */
+        private final boolean batched;
+        /** Цвет открытого элемента {@code <path>} в формате RGB или -1, если он не открыт. */
+        private int openColor = -1;
+        /** Признак того, что перед следующим числом нужен разделитель. */
+        private boolean separate;
+        /** Наибольшая длина числа с разделителем, в байтах. */
+        private static final int MAX_NUMBER_LENGTH = 24;
+        /** Цифры числа в обратном порядке. */
+        private final byte[] digits = new byte[20];
+
+        /** Индексы цветов палитры фигур блока, порядок фигур по цветам и счетчики. */
+        private int[] slots;
+        private int[] order;
+        private int[] counts;
+        private int[] firstSeen;
+
+        SvgWriter(OutputStream out, boolean batched) {
+            this.out = out;
+            this.batched = batched;
+        }
+
+        /**
+         * Пишет заголовок, фон и сетку. Область документа совпадает с изображением
+         * пакетного режима: от начала координат с отступом {@link DrawPanel#MARGIN}.
+         */
+        void begin(InputParameters p) {
+            int m = DrawPanel.MARGIN;
+            int width = (int) Math.ceil(p.getMaxX()) + 2 * m;
+            int height = (int) Math.ceil(p.getMaxY()) + 2 * m;
+            ascii("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"");
+            integer(width);
+            ascii("\" height=\"");
+            integer(height);
+            ascii("\" viewBox=\"");
+            integer(-m);
+            ascii(" ");
+            integer(-m);
+            ascii(" ");
+            integer(width);
+            ascii(" ");
+            integer(height);
+            ascii("\">\n<rect x=\"");
+            integer(-m);
+            ascii("\" y=\"");
+            integer(-m);
+            ascii("\" width=\"100%\" height=\"100%\" fill=\"#fff\"/>\n"
+                    + "<g fill=\"none\" stroke-width=\"1\">\n");
+            grid(p);
+        }
+
+        /** Закрывает документ и сбрасывает буфер в поток. */
+        void end() {
+            closePath();
+            ascii("</g>\n</svg>\n");
+            flush();
+        }
+
+        /**
+         * Пишет сетку одним элементом {@code <path>}, как {@link GridLayer}.
+         */
+        private void grid(InputParameters p) {
+            double step = p.getGridStep();
+            if (step <= 0) {
+                return;
+            }
+            int minX = (int) p.getMinX();
+            int maxX = (int) p.getMaxX();
+            int minY = (int) p.getMinY();
+            int maxY = (int) p.getMaxY();
+            openPath(0xC0C0C0);
+            for (double x = p.getMinX(); x <= p.getMaxX(); x += step) {
+                command('M');
+                number((int) x);
+                number(minY);
+                command('V');
+                number(maxY);
+            }
+            for (double y = p.getMinY(); y <= p.getMaxY(); y += step) {
+                command('M');
+                number(minX);
+                number((int) y);
+                command('H');
+                number(maxX);
+            }
+            closePath();
+        }
+
+        /**
+         * Пишет фигуры буфера: по порядку или, при группировке, по цветам палитры.
+         */
+        void shapes(ShapeBuffer buffer) {
+            int n = buffer.size();
+            if (!batched) {
+                for (int i = 0; i < n; i++) {
+                    openPath(buffer.getColor(i) & 0xFFFFFF);
+                    shape(buffer, i);
+                }
+                return;
+            }
+            if (slots == null || slots.length < n) {
+                slots = new int[n];
+                order = new int[n];
+                counts = new int[ShapePainter.PALETTE_SIZE + 1];
+                firstSeen = new int[ShapePainter.PALETTE_SIZE];
+            }
+            // устойчивая сортировка подсчетом по цветам палитры
+            Arrays.fill(counts, 0);
+            int used = 0;
+            for (int i = 0; i < n; i++) {
+                int slot = ShapePainter.paletteIndex(buffer.getColor(i));
+                slots[i] = slot;
+                if (counts[slot + 1]++ == 0) {
+                    firstSeen[used++] = slot;
+                }
+            }
+            for (int s = 0; s < ShapePainter.PALETTE_SIZE; s++) {
+                counts[s + 1] += counts[s];
+            }
+            for (int i = 0; i < n; i++) {
+                order[counts[slots[i]]++] = i;
+            }
+            // после раскладки counts[s] указывает на конец группы s
+            for (int u = 0; u < used; u++) {
+                int slot = firstSeen[u];
+                int end = counts[slot];
+                int start = slot == 0 ? 0 : counts[slot - 1];
+                openPath(ShapePainter.paletteColor(slot));
+                for (int k = start; k < end; k++) {
+                    shape(buffer, order[k]);
+                }
+            }
+        }
+
+        /**
+         * Пишет контур одной фигуры в открытый элемент {@code <path>}.
+         */
+        private void shape(ShapeBuffer b, int i) {
+            switch (b.getKind()) {
+                case LINE: {
+                    int x1 = (int) b.get(i, 0);
+                    int y1 = (int) b.get(i, 1);
+                    command('M');
+                    number(x1);
+                    number(y1);
+                    command('l');
+                    number((int) b.get(i, 2) - x1);
+                    number((int) b.get(i, 3) - y1);
+                    break;
+                }
+                case CIRCLE: {
+                    double r = b.get(i, 2);
+                    command('M');
+                    number(b.get(i, 0) - r);
+                    number(b.get(i, 1));
+                    arc(r, 2 * r);
+                    arc(r, -2 * r);
+                    break;
+                }
+                case RECTANGLE: {
+                    int w = (int) b.get(i, 2);
+                    command('M');
+                    number((int) b.get(i, 0));
+                    number((int) b.get(i, 1));
+                    command('h');
+                    number(w);
+                    command('v');
+                    number((int) b.get(i, 3));
+                    command('h');
+                    number(-w);
+                    command('z');
+                    break;
+                }
+                case TRIANGLE:
+                case TRAPEZOID: {
+                    int n = b.getKind().getStride() / 2;
+                    int x = (int) b.get(i, 0);
+                    int y = (int) b.get(i, 1);
+                    command('M');
+                    number(x);
+                    number(y);
+                    command('l');
+                    for (int k = 1; k < n; k++) {
+                        int nx = (int) b.get(i, 2 * k);
+                        int ny = (int) b.get(i, 2 * k + 1);
+                        number(nx - x);
+                        number(ny - y);
+                        x = nx;
+                        y = ny;
+                    }
+                    command('z');
+                    break;
+                }
+                case PARABOLA: {
+                    double a = b.get(i, 0);
+                    double bb = b.get(i, 1);
+                    double c = b.get(i, 2);
+                    double x0 = b.get(i, 3);
+                    double x1 = b.get(i, 4);
+                    // контрольная точка — пересечение касательных в концах отрезка
+                    double y0 = (a * x0 + bb) * x0 + c;
+                    double y1 = (a * x1 + bb) * x1 + c;
+                    double slope = 2 * a * x0 + bb;
+                    command('M');
+                    number(x0);
+                    number(y0);
+                    command('Q');
+                    number((x0 + x1) / 2);
+                    number(y0 + slope * (x1 - x0) / 2);
+                    number(x1);
+                    number(y1);
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unknown shape kind: " + b.getKind());
+            }
+        }
+
+        /** Пишет полуокружность радиуса r со сдвигом конца на dx по оси X. */
+        private void arc(double r, double dx) {
+            command('a');
+            number(r);
+            number(r);
+            ascii(" 0 1 0");
+            separate = true;
+            number(dx);
+            number(0);
+        }
+
+        /** Открывает элемент {@code <path>} заданного цвета, если открыт элемент другого цвета. */
+        private void openPath(int rgb) {
+            if (rgb == openColor) {
+                return;
+            }
+            closePath();
+            ascii("<path stroke=\"");
+            color(rgb);
+            ascii("\" d=\"");
+            openColor = rgb;
+            separate = false;
+        }
+
+        private void closePath() {
+            if (openColor >= 0) {
+                ascii("\"/>\n");
+                openColor = -1;
+            }
+        }
+
+        /** Пишет цвет как #rgb, если каждый канал состоит из двух одинаковых цифр, иначе #rrggbb. */
+        private void color(int rgb) {
+            put('#');
+            if ((rgb >> 4 & 0x0F0F0F) == (rgb & 0x0F0F0F)) {
+                hex(rgb >> 16 & 0xF);
+                hex(rgb >> 8 & 0xF);
+                hex(rgb & 0xF);
+            } else {
+                for (int shift = 20; shift >= 0; shift -= 4) {
+                    hex(rgb >> shift & 0xF);
+                }
+            }
+        }
+
+        private void hex(int nibble) {
+            put((byte) (nibble < 10 ? '0' + nibble : 'a' + nibble - 10));
+        }
+
+        private void command(char c) {
+            put((byte) c);
+            separate = false;
+        }
+
+        /**
+         * Пишет число не длиннее двух знаков после точки: без ведущего нуля,
+         * без нулей в конце и без пробела перед минусом.
+         */
+        private void number(double value) {
+            long n = Math.round(value * 100);
+            reserve(MAX_NUMBER_LENGTH);
+            if (n < 0) {
+                buf[pos++] = '-';
+                n = -n;
+            } else if (separate) {
+                buf[pos++] = ' ';
+            }
+            separate = true;
+            long whole = n / 100;
+            int fraction = (int) (n % 100);
+            if (whole != 0 || fraction == 0) {
+                digits(whole);
+            }
+            if (fraction != 0) {
+                buf[pos++] = '.';
+                buf[pos++] = (byte) ('0' + fraction / 10);
+                if (fraction % 10 != 0) {
+                    buf[pos++] = (byte) ('0' + fraction % 10);
+                }
+            }
+        }
+
+        /** Пишет целую координату; то же, что {@link #number(double)}, но без округления. */
+        private void number(int value) {
+            reserve(MAX_NUMBER_LENGTH);
+            if (value < 0) {
+                buf[pos++] = '-';
+            } else if (separate) {
+                buf[pos++] = ' ';
+            }
+            separate = true;
+            digits(Math.abs((long) value));
+        }
+
+        /** Пишет целое число со знаком. */
+        private void integer(long value) {
+            reserve(MAX_NUMBER_LENGTH);
+            if (value < 0) {
+                buf[pos++] = '-';
+                value = -value;
+            }
+            digits(value);
+        }
+
+        /** Пишет цифры неотрицательного числа; место в буфере должно быть зарезервировано. */
+        private void digits(long value) {
+            int count = 0;
+            do {
+                digits[count++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            while (count > 0) {
+                buf[pos++] = digits[--count];
+            }
+        }
+
+        /** Освобождает в буфере место под {@code bytes} байт. */
+        private void reserve(int bytes) {
+            if (pos + bytes > buf.length) {
+                flush();
+            }
+        }
+
+        private void ascii(String s) {
+            for (int i = 0, n = s.length(); i < n; i++) {
+                put((byte) s.charAt(i));
+            }
+        }
+
+        private void put(char c) {
+            put((byte) c);
+        }
+
+        private void put(byte b) {
+            if (pos == buf.length) {
+                flush();
+            }
+            buf[pos++] = b;
+        }
+
+        private void flush() {
+            try {
+                out.write(buf, 0, pos);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            pos = 0;
+        }
+    }
+}
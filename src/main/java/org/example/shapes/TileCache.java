@@ -0,0 +1,216 @@
+package org.example.shapes;
+
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Кэш нарисованных плиток панели с вытеснением давно не использованных.
+ * <p>
+ * Плитка определяется уровнем масштаба, вариантом отрисовки (например, со сглаживанием
+ * или без) и номером столбца и строки в сетке плиток этого уровня, поэтому при возврате
+ * к прежнему масштабу плитки берутся из кэша, а плитки разных вариантов не смешиваются.
+ * Плитки рисуются в пуле потоков; повторный запрос плитки, которая еще рисуется,
+ * возвращает ту же задачу. После {@link #clear()} результаты начатых ранее задач
+ * в кэш не попадают. О каждой плитке, попавшей в кэш, сообщается получателю
+ * {@link ReadyListener} — например, чтобы перерисовать ее область на экране.
+ * Готовую плитку можно дорисовать в пуле потоков (см. {@link #update}).
+ * <p>
+ * Методы можно вызывать из любого потока.
+ */
+final class TileCache {
+
+    /** Размер плитки в пикселях устройства. */
+    static final int TILE_SIZE = 256;
+
+    /** Пул потоков, в котором рисуются плитки. */
+    private final ExecutorService executor;
+    /** Готовые плитки в порядке использования: первая — давно не использованная. */
+    private final Map<Key, Tile> tiles;
+    /** Плитки, которые сейчас рисуются. */
+    private final Map<Key, Future<Tile>> pending = new HashMap<>();
+    /** Получатель сообщений о готовых плитках. */
+    private final ReadyListener listener;
+    /** Номер поколения кэша; увеличивается при очистке. */
+    private long generation;
+
+    /**
+     * Создает кэш.
+     *
+     * @param executor пул потоков для отрисовки плиток
+     * @param capacity наибольшее количество хранимых плиток
+     * @param listener получатель сообщений о готовых и дорисованных плитках
+     */
+    TileCache(ExecutorService executor, int capacity, ReadyListener listener) {
+        this.executor = executor;
+        this.listener = listener;
+        this.tiles = new LinkedHashMap<Key, Tile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Tile> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Возвращает готовую плитку и отмечает ее как использованную.
+     *
+     * @return плитка или {@code null}, если ее нет в кэше
+     */
+    synchronized Tile get(int level, int variant, int col, int row) {
+        return tiles.get(new Key(level, variant, col, row));
+    }
+
+    /**
+     * Запрашивает плитку: возвращает готовую, уже начатую или новую задачу отрисовки.
+     * Нарисованная плитка сохраняется в кэше, если кэш не был очищен за время отрисовки.
+     *
+     * @param renderer отрисовка плитки
+     * @return задача, результатом которой будет плитка
+     */
+    synchronized Future<Tile> request(int level, int variant, int col, int row,
+                                      Callable<Tile> renderer) {
+        Key key = new Key(level, variant, col, row);
+        Tile ready = tiles.get(key);
+        if (ready != null) {
+            return CompletableFuture.completedFuture(ready);
+        }
+        Future<Tile> running = pending.get(key);
+        if (running != null) {
+            return running;
+        }
+        long requested = generation;
+        FutureTask<Tile> task = new FutureTask<>(() -> {
+            Tile tile = null;
+            boolean stored = false;
+            try {
+                tile = renderer.call();
+                return tile;
+            } finally {
+                synchronized (TileCache.this) {
+                    if (generation == requested) {
+                        pending.remove(key);
+                        if (tile != null) {
+                            tiles.put(key, tile);
+                            stored = true;
+                        }
+                    }
+                }
+                if (stored) {
+                    listener.tileReady(level, col, row);
+                }
+            }
+        });
+        pending.put(key, task);
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Дорисовывает готовую плитку в пуле потоков, если она уже не дорисовывается,
+     * и затем сообщает о ней получателю. Пока плитка дорисовывается, ее изображение
+     * можно копировать на экран: на нем будет часть нового содержимого.
+     *
+     * @param tile    плитка из кэша
+     * @param updater дорисовка плитки
+     */
+    synchronized void update(int level, int col, int row, Tile tile, Runnable updater) {
+        if (tile.updating) {
+            return;
+        }
+        tile.updating = true;
+        executor.execute(() -> {
+            try {
+                updater.run();
+            } finally {
+                synchronized (TileCache.this) {
+                    tile.updating = false;
+                }
+                listener.tileReady(level, col, row);
+            }
+        });
+    }
+
+    /**
+     * Удаляет все плитки и отменяет начатые отрисовки; отмененные отрисовки
+     * учитываются в {@link RenderMetrics#getDroppedTiles()}.
+     */
+    synchronized void clear() {
+        generation++;
+        tiles.clear();
+        if (!pending.isEmpty()) {
+            RenderMetrics.get().recordDroppedTiles(pending.size());
+        }
+        for (Future<Tile> f : pending.values()) {
+            f.cancel(false);
+        }
+        pending.clear();
+    }
+
+    /** @return количество плиток в кэше */
+    synchronized int size() {
+        return tiles.size();
+    }
+
+    /**
+     * Нарисованная плитка.
+     */
+    static final class Tile {
+        /** Изображение плитки. */
+        final BufferedImage image;
+        /** Количество сцен, уже нарисованных на плитке; меняется только при дорисовке. */
+        volatile int drawn;
+        /** Признак того, что плитка сейчас дорисовывается; защищен блокировкой кэша. */
+        private boolean updating;
+
+        Tile(BufferedImage image, int drawn) {
+            this.image = image;
+            this.drawn = drawn;
+        }
+    }
+
+    /**
+     * Получатель сообщений о плитках, которые нарисованы и сохранены в кэше
+     * или дорисованы. Вызывается в потоке отрисовки плитки.
+     */
+    interface ReadyListener {
+        void tileReady(int level, int col, int row);
+    }
+
+    /**
+     * Ключ плитки: уровень масштаба, вариант отрисовки, столбец и строка.
+     */
+    private static final class Key {
+        final int level;
+        final int variant;
+        final int col;
+        final int row;
+
+        Key(int level, int variant, int col, int row) {
+            this.level = level;
+            this.variant = variant;
+            this.col = col;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return level == k.level && variant == k.variant && col == k.col && row == k.row;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((level * 31 + variant) * 31 + col) * 31 + row;
+        }
+    }
+}
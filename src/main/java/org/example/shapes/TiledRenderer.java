@@ -0,0 +1,202 @@
+package org.example.shapes;
+
+import java.awt.*;                           // базовые графические классы AWT
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Многопоточная отрисовка больших сцен по плиткам.
+ * <p>
+ * Изображение делится на квадратные плитки. Каждая плитка рисуется в собственный
+ * {@link BufferedImage} в пуле потоков, а готовые плитки копируются в итоговое
+ * изображение. Фигуры для плитки выбираются запросом к {@link SpatialIndex} сцены
+ * по ее прямоугольнику (если индекс не построен, он строится на время отрисовки
+ * с ячейками размером в плитку); номера из индекса упорядочены, поэтому порядок
+ * наложения фигур внутри плитки такой же, как при обычной отрисовке.
+ * <p>
+ * Пользовательские фигуры {@link DrawableShape} не имеют известных границ,
+ * поэтому рисуются в каждой плитке и должны допускать вызов из нескольких потоков.
+ */
+public final class TiledRenderer {
+
+    /** Размер плитки по умолчанию, в пикселях. */
+    public static final int DEFAULT_TILE_SIZE = 128;
+
+    /** Запас вокруг плитки на толщину линии и сглаживание, в пикселях. */
+    private static final double STROKE_PAD = 2;
+
+    /** Пул потоков, в котором рисуются плитки. */
+    private final ExecutorService executor;
+    /** Размер плитки в пикселях. */
+    private final int tileSize;
+    /** Признак сглаживания фигур. */
+    private volatile boolean antialiasing = true;
+    /** Признак отрисовки фигур группами по цветам палитры. */
+    private volatile boolean colorBatching;
+
+    /**
+     * Создает отрисовщик с заданным пулом потоков и размером плитки.
+     *
+     * @param executor пул потоков для отрисовки плиток
+     * @param tileSize размер плитки в пикселях
+     */
+    public TiledRenderer(ExecutorService executor, int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive: " + tileSize);
+        }
+        this.executor = executor;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Включает или выключает сглаживание фигур (по умолчанию включено).
+     */
+    public void setAntialiasing(boolean antialiasing) {
+        this.antialiasing = antialiasing;
+    }
+
+    /**
+     * Включает или выключает отрисовку фигур группами по цветам палитры
+     * (по умолчанию выключена, см. {@link ShapePainter#VALUE_ORDER_BY_COLOR}).
+     */
+    public void setColorBatching(boolean colorBatching) {
+        this.colorBatching = colorBatching;
+    }
+
+    /**
+     * Рисует сцену в изображение.
+     *
+     * @param target     итоговое изображение
+     * @param transform  преобразование из координат сцены в пиксели изображения
+     *                   (допускаются только масштаб и сдвиг)
+     * @param background цвет фона
+     * @param underlay   слой, рисуемый под фигурами (например, сетка), или {@code null}
+     * @param scene      сцена с фигурами
+     */
+    public void render(BufferedImage target, AffineTransform transform, Color background,
+                       DrawableShape underlay, ShapeStore scene) {
+        render(target, transform, background, underlay, Collections.singletonList(scene));
+    }
+
+    /**
+     * Рисует несколько сцен одну поверх другой в изображение.
+     *
+     * @param target     итоговое изображение
+     * @param transform  преобразование из координат сцены в пиксели изображения
+     *                   (допускаются только масштаб и сдвиг)
+     * @param background цвет фона
+     * @param underlay   слой, рисуемый под фигурами (например, сетка), или {@code null}
+     * @param scenes     сцены в порядке отрисовки
+     */
+    public void render(BufferedImage target, AffineTransform transform, Color background,
+                       DrawableShape underlay, List<ShapeStore> scenes) {
+        int width = target.getWidth();
+        int height = target.getHeight();
+        int cols = (width + tileSize - 1) / tileSize;
+        int rows = (height + tileSize - 1) / tileSize;
+
+        SpatialIndex[] indexes = new SpatialIndex[scenes.size()];
+        for (int k = 0; k < indexes.length; k++) {
+            SpatialIndex index = scenes.get(k).getIndex();
+            if (index == null) {
+                Rectangle2D area = toScene(transform, 0, 0, width, height);
+                index = SpatialIndex.build(scenes.get(k).buffers(), area.getMinX(), area.getMaxX(),
+                        area.getMinY(), area.getMaxY(), tileSize / transform.getScaleX());
+            }
+            indexes[k] = index;
+        }
+
+        List<Future<BufferedImage>> tiles = new ArrayList<>(cols * rows);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int x = col * tileSize;
+                int y = row * tileSize;
+                int w = Math.min(tileSize, width - x);
+                int h = Math.min(tileSize, height - y);
+                boolean aa = antialiasing;
+                boolean batching = colorBatching;
+                tiles.add(executor.submit(() -> renderTile(x, y, w, h, transform, background,
+                        aa, batching, underlay, scenes, indexes)));
+            }
+        }
+
+        Graphics2D g = target.createGraphics();
+        try {
+            for (int i = 0; i < tiles.size(); i++) {
+                g.drawImage(tiles.get(i).get(), (i % cols) * tileSize, (i / cols) * tileSize, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelAll(tiles);
+        } catch (ExecutionException e) {
+            cancelAll(tiles);
+            throw new IllegalStateException("Tile rendering failed", e.getCause());
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Переводит прямоугольник в пикселях (с запасом на толщину линии) в координаты сцены.
+     */
+    private static Rectangle2D toScene(AffineTransform transform, int x, int y, int w, int h) {
+        double sx = transform.getScaleX();
+        double sy = transform.getScaleY();
+        double tx = transform.getTranslateX();
+        double ty = transform.getTranslateY();
+        return new Rectangle2D.Double(
+                (x - STROKE_PAD - tx) / sx, (y - STROKE_PAD - ty) / sy,
+                (w + 2 * STROKE_PAD) / sx, (h + 2 * STROKE_PAD) / sy);
+    }
+
+    /**
+     * Рисует одну плитку в отдельное изображение.
+     */
+    private static BufferedImage renderTile(int x, int y, int w, int h, AffineTransform transform,
+                                            Color background, boolean antialiasing,
+                                            boolean colorBatching, DrawableShape underlay,
+                                            List<ShapeStore> scenes, SpatialIndex[] indexes) {
+        BufferedImage tile = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = tile.createGraphics();
+        try {
+            g2.setColor(background);
+            g2.fillRect(0, 0, w, h);
+            g2.translate(-x, -y);
+            g2.clipRect(x, y, w, h);
+            g2.transform(transform);
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing
+                    ? RenderingHints.VALUE_ANTIALIAS_ON
+                    : RenderingHints.VALUE_ANTIALIAS_OFF);
+            g2.setRenderingHint(ShapePainter.KEY_DRAW_ORDER, colorBatching
+                    ? ShapePainter.VALUE_ORDER_BY_COLOR
+                    : ShapePainter.VALUE_ORDER_STRICT);
+
+            if (underlay != null) {
+                underlay.draw(g2);
+            }
+            Rectangle2D area = toScene(transform, x, y, w, h);
+            for (int k = 0; k < indexes.length; k++) {
+                indexes[k].draw(g2, indexes[k].query(area));
+                for (DrawableShape s : scenes.get(k).customShapes()) {
+                    s.draw(g2);
+                }
+            }
+        } finally {
+            g2.dispose();
+        }
+        return tile;
+    }
+
+    private static void cancelAll(List<? extends Future<?>> futures) {
+        for (Future<?> f : futures) {
+            f.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.shapes;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Прежняя модель размещения: каждая координата равномерно распределена
+ * в диапазоне, сжатом к его центру в {@code 1 + 4 * кучность} раз.
+ * Сцены с этим распределением совпадают со сценами, сгенерированными
+ * до появления {@link PositionDistribution}.
+ */
+final class UniformDistribution implements PositionDistribution {
+
+    /** Имя распределения. */
+    static final String NAME = "uniform";
+
+    static final UniformDistribution INSTANCE = new UniformDistribution();
+
+    private UniformDistribution() {
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Sampler prepare(InputParameters params, int count, RandomGenerator random) {
+        double density = params.getDensity();
+        return new Sampler() {
+            @Override
+            public void sample(int index, double minX, double maxX, double minY, double maxY,
+                               RandomGenerator r, double[] out) {
+                out[0] = biasedRandom(minX, maxX, density, r);
+                out[1] = biasedRandom(minY, maxY, density, r);
+            }
+
+            @Override
+            public double sampleY(int index, double minY, double maxY,
+                                  RandomGenerator r, double[] out) {
+                return biasedRandom(minY, maxY, density, r);
+            }
+        };
+    }
+
+    /**
+     * Возвращает случайное значение из [min, max], сжатое к центру тем сильнее,
+     * чем выше плотность. Доступен в пакете для бенчмарков.
+     */
+    static double biasedRandom(double min, double max, double density,
+                               RandomGenerator random) {
+        double center = (min + max) / 2.0;
+        double half   = (max - min) / 2.0;
+        double r = 2 * random.nextDouble() - 1;
+        double factor = 1.0 + density * 4.0;
+        r = r / factor;
+        return center + r * half;
+    }
+}
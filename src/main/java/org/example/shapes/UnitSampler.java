@@ -0,0 +1,42 @@
+package org.example.shapes;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Выборка, которая выбирает точку в единичном квадрате, соответствующем всей
+ * области генерации, и переносит ее в прямоугольник, запрошенный для фигуры.
+ */
+abstract class UnitSampler implements PositionDistribution.Sampler {
+
+    /**
+     * Выбирает точку в единичном квадрате.
+     *
+     * @param index  номер точки
+     * @param random поток случайных чисел блока генерации
+     * @param out    массив, в который записываются координаты точки из [0, 1]
+     */
+    abstract void unit(int index, RandomGenerator random, double[] out);
+
+    @Override
+    public final void sample(int index, double minX, double maxX, double minY, double maxY,
+                             RandomGenerator random, double[] out) {
+        unit(index, random, out);
+        out[0] = minX + out[0] * (maxX - minX);
+        out[1] = minY + out[1] * (maxY - minY);
+    }
+
+    /**
+     * Возвращает нормально распределенное значение со средним {@code mean}
+     * и отклонением {@code sigma}, попадающее в [0, 1]; значения за границами
+     * отбрасываются, после нескольких неудач результат прижимается к границе.
+     */
+    static double truncatedGaussian(double mean, double sigma, RandomGenerator random) {
+        for (int attempt = 0; attempt < 8; attempt++) {
+            double v = mean + sigma * random.nextGaussian();
+            if (v >= 0 && v <= 1) {
+                return v;
+            }
+        }
+        return Math.min(1, Math.max(0, mean));
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.shapes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Сцена однозначно определяется параметрами: пул любого размера генерирует
+ * одинаковые координаты и цвета при любом распределении положений.
+ */
+class GenerationDeterminismTest {
+
+    /** Фигур каждого типа: несколько блоков генерации и неполный последний блок. */
+    private static final int PER_KIND = 3 * RandomShapeGenerator.CHUNK_SIZE + 100;
+    private static final int[] POOL_SIZES = {1, 3, 7};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void poolSizeDoesNotChangeTheScene() throws IOException {
+        for (String distribution : distributions()) {
+            InputParameters params = new InputParameters(PER_KIND, PER_KIND, PER_KIND, PER_KIND,
+                    PER_KIND, PER_KIND, 0, 1000, 0, 800, 0.3, 0, 11, distribution);
+            List<ShapeBuffer> expected = null;
+            for (int size : POOL_SIZES) {
+                ForkJoinPool pool = new ForkJoinPool(size);
+                try {
+                    RandomShapeGenerator generator = new RandomShapeGenerator();
+                    generator.setPool(pool);
+                    List<ShapeBuffer> buffers = new ArrayList<>(generator.generateScene(params).buffers());
+                    if (expected == null) {
+                        expected = buffers;
+                        continue;
+                    }
+                    assertEquals(expected.size(), buffers.size(), distribution);
+                    for (int b = 0; b < buffers.size(); b++) {
+                        String where = distribution + ", pool of " + size + ", " + buffers.get(b).getKind();
+                        assertEquals(expected.get(b).getKind(), buffers.get(b).getKind(), where);
+                        assertEquals(expected.get(b).coordData(), buffers.get(b).coordData(), where);
+                        assertEquals(expected.get(b).colorData(), buffers.get(b).colorData(), where);
+                    }
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+
+    /** @return все встроенные распределения; маска — градиент во временном файле */
+    private List<String> distributions() throws IOException {
+        BufferedImage mask = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < mask.getHeight(); y++) {
+            for (int x = 0; x < mask.getWidth(); x++) {
+                int v = 255 * x / (mask.getWidth() - 1);
+                mask.setRGB(x, y, v << 16 | v << 8 | v);
+            }
+        }
+        Path file = dir.resolve("mask.png");
+        ImageIO.write(mask, "png", file.toFile());
+        return List.of(UniformDistribution.NAME, GaussianDistribution.NAME, PoissonDiskDistribution.NAME,
+                ClusteredDistribution.NAME, ImageMaskDistribution.NAME + ":" + file);
+    }
+}
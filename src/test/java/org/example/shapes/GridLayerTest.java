@@ -0,0 +1,34 @@
+package org.example.shapes;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Отрисовка сетки с очень мелким шагом.
+ */
+class GridLayerTest {
+
+    @Test
+    void tinyStepsFinishQuickly() {
+        // шаг 1e-4 на 8000 — 80 миллионов линий; около 1e17 соседние значения double
+        // отстоят на 16, и шаг 1 не сдвигает координату
+        double[][] grids = {{0, 8000, 1e-4}, {1e17, 1e17 + 1000, 1}};
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        for (double[] grid : grids) {
+            GridLayer layer = new GridLayer(grid[0], grid[1], grid[0], grid[1], grid[2]);
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                Graphics2D g2 = image.createGraphics();
+                try {
+                    layer.draw(g2);
+                } finally {
+                    g2.dispose();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.example.shapes;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.text.AttributedCharacterIterator;
+import java.util.Map;
+
+/**
+ * Графический контекст, который ничего не рисует и сам ничего не создает при
+ * рисовании. Хранит только преобразование, цвет, линию и подсказки, поэтому
+ * память, выделенная во время отрисовки в такой контекст, выделена самим
+ * рисующим кодом, а не конвейером Java2D. Области отсечения нет.
+ */
+final class NullGraphics2D extends Graphics2D {
+
+    private final AffineTransform transform = new AffineTransform();
+    private final RenderingHints hints = new RenderingHints(null);
+    private Color color = Color.BLACK;
+    private Paint paint = Color.BLACK;
+    private Color background = Color.WHITE;
+    private Stroke stroke = new BasicStroke();
+    private Composite composite = AlphaComposite.SrcOver;
+    private Font font = new Font(Font.DIALOG, Font.PLAIN, 12);
+
+    @Override public void draw(Shape s) { }
+    @Override public void fill(Shape s) { }
+    @Override public void drawLine(int x1, int y1, int x2, int y2) { }
+    @Override public void fillRect(int x, int y, int width, int height) { }
+    @Override public void drawRect(int x, int y, int width, int height) { }
+    @Override public void clearRect(int x, int y, int width, int height) { }
+    @Override public void drawRoundRect(int x, int y, int w, int h, int arcW, int arcH) { }
+    @Override public void fillRoundRect(int x, int y, int w, int h, int arcW, int arcH) { }
+    @Override public void drawOval(int x, int y, int width, int height) { }
+    @Override public void fillOval(int x, int y, int width, int height) { }
+    @Override public void drawArc(int x, int y, int w, int h, int start, int arc) { }
+    @Override public void fillArc(int x, int y, int w, int h, int start, int arc) { }
+    @Override public void drawPolyline(int[] xs, int[] ys, int n) { }
+    @Override public void drawPolygon(int[] xs, int[] ys, int n) { }
+    @Override public void fillPolygon(int[] xs, int[] ys, int n) { }
+    @Override public void drawString(String str, int x, int y) { }
+    @Override public void drawString(String str, float x, float y) { }
+    @Override public void drawString(AttributedCharacterIterator it, int x, int y) { }
+    @Override public void drawString(AttributedCharacterIterator it, float x, float y) { }
+    @Override public void drawGlyphVector(GlyphVector g, float x, float y) { }
+    @Override public void drawRenderedImage(RenderedImage img, AffineTransform xform) { }
+    @Override public void drawRenderableImage(RenderableImage img, AffineTransform xform) { }
+    @Override public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) { }
+    @Override public boolean drawImage(Image img, AffineTransform xform, ImageObserver obs) { return true; }
+    @Override public boolean drawImage(Image img, int x, int y, ImageObserver obs) { return true; }
+    @Override public boolean drawImage(Image img, int x, int y, int w, int h, ImageObserver obs) { return true; }
+    @Override public boolean drawImage(Image img, int x, int y, Color bg, ImageObserver obs) { return true; }
+    @Override public boolean drawImage(Image img, int x, int y, int w, int h, Color bg, ImageObserver obs) {
+        return true;
+    }
+    @Override public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2,
+                                       int sx1, int sy1, int sx2, int sy2, ImageObserver obs) {
+        return true;
+    }
+    @Override public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2,
+                                       int sx1, int sy1, int sx2, int sy2, Color bg, ImageObserver obs) {
+        return true;
+    }
+    @Override public void copyArea(int x, int y, int width, int height, int dx, int dy) { }
+
+    @Override public boolean hit(Rectangle rect, Shape s, boolean onStroke) { return false; }
+    @Override public GraphicsConfiguration getDeviceConfiguration() { return null; }
+    @Override public FontRenderContext getFontRenderContext() { return new FontRenderContext(transform, false, false); }
+    @Override public FontMetrics getFontMetrics(Font f) { throw new UnsupportedOperationException(); }
+
+    @Override public void setComposite(Composite comp) { composite = comp; }
+    @Override public Composite getComposite() { return composite; }
+    @Override public void setPaint(Paint p) {
+        paint = p;
+        if (p instanceof Color) {
+            color = (Color) p;
+        }
+    }
+    @Override public Paint getPaint() { return paint; }
+    @Override public void setColor(Color c) {
+        color = c;
+        paint = c;
+    }
+    @Override public Color getColor() { return color; }
+    @Override public void setPaintMode() { }
+    @Override public void setXORMode(Color c) { }
+    @Override public void setBackground(Color c) { background = c; }
+    @Override public Color getBackground() { return background; }
+    @Override public void setStroke(Stroke s) { stroke = s; }
+    @Override public Stroke getStroke() { return stroke; }
+    @Override public void setFont(Font f) { font = f; }
+    @Override public Font getFont() { return font; }
+
+    @Override public void setRenderingHint(RenderingHints.Key key, Object value) { hints.put(key, value); }
+    @Override public Object getRenderingHint(RenderingHints.Key key) { return hints.get(key); }
+    @Override public void setRenderingHints(Map<?, ?> map) {
+        hints.clear();
+        hints.putAll(map);
+    }
+    @Override public void addRenderingHints(Map<?, ?> map) { hints.putAll(map); }
+    @Override public RenderingHints getRenderingHints() { return (RenderingHints) hints.clone(); }
+
+    @Override public void translate(int x, int y) { transform.translate(x, y); }
+    @Override public void translate(double tx, double ty) { transform.translate(tx, ty); }
+    @Override public void rotate(double theta) { transform.rotate(theta); }
+    @Override public void rotate(double theta, double x, double y) { transform.rotate(theta, x, y); }
+    @Override public void scale(double sx, double sy) { transform.scale(sx, sy); }
+    @Override public void shear(double shx, double shy) { transform.shear(shx, shy); }
+    @Override public void transform(AffineTransform tx) { transform.concatenate(tx); }
+    @Override public void setTransform(AffineTransform tx) { transform.setTransform(tx); }
+    @Override public AffineTransform getTransform() { return new AffineTransform(transform); }
+
+    @Override public Rectangle getClipBounds() { return null; }
+    @Override public Shape getClip() { return null; }
+    @Override public void clip(Shape s) { }
+    @Override public void clipRect(int x, int y, int width, int height) { }
+    @Override public void setClip(int x, int y, int width, int height) { }
+    @Override public void setClip(Shape clip) { }
+
+    @Override public Graphics create() { return this; }
+    @Override public void dispose() { }
+}
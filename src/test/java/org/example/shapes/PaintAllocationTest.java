@@ -0,0 +1,72 @@
+package org.example.shapes;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Graphics2D;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Цикл отрисовки в строгом порядке не создает объектов на каждую фигуру.
+ * <p>
+ * Сцена из двух чередующихся цветов (каждая фигура меняет цвет контекста, и цвет
+ * берется из кэша) рисуется в {@link NullGraphics2D}, поэтому учитывается только
+ * память, выделенная отрисовщиком, а не конвейером Java2D. Проход отрисовки создает
+ * отрисовщик и его рабочие массивы, поэтому сравниваются две сцены разного размера:
+ * большая сцена может занять больше памяти меньше чем на байт на фигуру (разброс
+ * в десятки байт дает компилятор), а любой объект на фигуру занимает не меньше 16 байт.
+ */
+class PaintAllocationTest {
+
+    private static final int SMALL = 1_000;
+    private static final int LARGE = 20_000;
+    private static final int[] COLORS = {0xFF336699, 0xFF996633};
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void drawingAllocatesNothingPerShape() {
+        assertTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        for (ShapeKind kind : ShapeKind.values()) {
+            long small = allocatedPerPass(scene(kind, SMALL));
+            long large = allocatedPerPass(scene(kind, LARGE));
+            assertTrue(large - small < LARGE - SMALL, kind + ": " + SMALL + " shapes take "
+                    + small + " bytes, " + LARGE + " shapes take " + large + " bytes");
+        }
+    }
+
+    /** @return сцена из фигур одного типа двух чередующихся цветов */
+    private static ShapeStore scene(ShapeKind kind, int count) {
+        int[] counts = new int[ShapeKind.values().length];
+        counts[kind.ordinal()] = count;
+        InputParameters params = new InputParameters(counts[0], counts[1], counts[2], counts[3],
+                counts[4], counts[5], 0, 800, 0, 600, 0, 0, 1, UniformDistribution.NAME);
+        ShapeStore scene = new RandomShapeGenerator().generateScene(params);
+        ShapeBuffer buffer = scene.buffer(kind, 0);
+        for (int i = 0; i < buffer.size(); i++) {
+            buffer.setColor(i, COLORS[i % COLORS.length]);
+        }
+        return scene;
+    }
+
+    /**
+     * @return наименьшая память, выделенная за один проход {@link ShapeStore#draw},
+     *         после прогревочных проходов
+     */
+    private long allocatedPerPass(ShapeStore scene) {
+        Graphics2D g2 = new NullGraphics2D();
+        g2.setRenderingHint(ShapePainter.KEY_DRAW_ORDER, ShapePainter.VALUE_ORDER_STRICT);
+        long thread = Thread.currentThread().getId();
+        long best = Long.MAX_VALUE;
+        for (int pass = 0; pass < 10; pass++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            scene.draw(g2, null);
+            long after = threads.getThreadAllocatedBytes(thread);
+            best = Math.min(best, after - before);
+        }
+        return best;
+    }
+}
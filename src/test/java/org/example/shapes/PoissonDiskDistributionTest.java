@@ -0,0 +1,85 @@
+package org.example.shapes;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Минимальное расстояние между опорными точками фигур при распределении {@code poisson}.
+ */
+class PoissonDiskDistributionTest {
+
+    /** Количество фигур каждого типа. */
+    private static final int SHAPES = 500;
+    /** Погрешность от округления вершин треугольников и трапеций до целых. */
+    private static final double ROUNDING = Math.sqrt(2);
+
+    @Test
+    void anchorsKeepMinimumDistanceForEveryKind() {
+        for (ShapeKind kind : ShapeKind.values()) {
+            for (long seed = 1; seed <= 5; seed++) {
+                InputParameters params = params(kind, seed);
+                List<double[]> anchors = anchors(params, kind);
+                Rectangle2D area = RandomShapeGenerator.anchors(params, kind);
+                double nominal = PoissonDiskDistribution.radiusFor(
+                        area.getWidth(), area.getHeight(), anchors.size());
+                // радиус уменьшается, только если точек не хватило, а запас около 20%
+                double bound = PoissonDiskDistribution.RADIUS_SHRINK * nominal - ROUNDING;
+                double min = minDistance(anchors);
+                assertTrue(min >= bound, kind + ", seed " + seed + ": closest anchors are "
+                        + min + " apart, nominal radius " + nominal);
+            }
+        }
+    }
+
+    private static InputParameters params(ShapeKind kind, long seed) {
+        int[] counts = new int[ShapeKind.values().length];
+        counts[kind.ordinal()] = SHAPES;
+        return new InputParameters(counts[0], counts[1], counts[2], counts[3], counts[4], counts[5],
+                0, 1000, 0, 500, 0, 0, seed, PoissonDiskDistribution.NAME);
+    }
+
+    /** Опорные точки фигур: точки, которые распределение выбирает для каждой фигуры. */
+    private static List<double[]> anchors(InputParameters params, ShapeKind kind) {
+        ShapeBuffer b = new RandomShapeGenerator().generateScene(params).buffer(kind, 0);
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < b.size(); i++) {
+            switch (kind) {
+                case LINE:
+                    points.add(new double[]{b.get(i, 0), b.get(i, 1)});
+                    points.add(new double[]{b.get(i, 2), b.get(i, 3)});
+                    break;
+                case TRIANGLE:
+                    for (int k = 0; k < 3; k++) {
+                        points.add(new double[]{b.get(i, 2 * k), b.get(i, 2 * k + 1)});
+                    }
+                    break;
+                case PARABOLA:
+                    // начало параболы: Y при минимальном X
+                    points.add(new double[]{params.getMinX(), b.get(i, 2)});
+                    break;
+                default:
+                    // центр окружности, угол прямоугольника, левый нижний угол трапеции
+                    points.add(new double[]{b.get(i, 0), b.get(i, 1)});
+                    break;
+            }
+        }
+        return points;
+    }
+
+    private static double minDistance(List<double[]> points) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < points.size(); i++) {
+            for (int j = i + 1; j < points.size(); j++) {
+                double dx = points.get(i)[0] - points.get(j)[0];
+                double dy = points.get(i)[1] - points.get(j)[1];
+                min = Math.min(min, Math.hypot(dx, dy));
+            }
+        }
+        return min;
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.shapes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Сохранение и загрузка файла сцены, в том числе поврежденного.
+ */
+class SceneFileTest {
+
+    @TempDir
+    Path dir;
+
+    private static final InputParameters PARAMS = new InputParameters(
+            40, 30, 20, 10, 5, 15, 0, 800, 0, 600, 0.3, 25, 7, ClusteredDistribution.NAME);
+
+    @Test
+    void savedScenesLoadUnchanged() throws IOException {
+        List<ShapeStore> scenes = scenes();
+        Path file = dir.resolve("scene.rscn");
+        SceneFile.save(file, PARAMS, scenes);
+
+        SceneFile loaded = SceneFile.load(file);
+        assertEquals(PARAMS, loaded.getParameters());
+        assertEquals(scenes.size(), loaded.getScenes().size());
+        for (int s = 0; s < scenes.size(); s++) {
+            List<ShapeBuffer> expected = new ArrayList<>(scenes.get(s).buffers());
+            List<ShapeBuffer> actual = new ArrayList<>(loaded.getScenes().get(s).buffers());
+            assertEquals(expected.size(), actual.size());
+            for (int b = 0; b < expected.size(); b++) {
+                assertEquals(expected.get(b).getKind(), actual.get(b).getKind());
+                assertEquals(expected.get(b).coordData(), actual.get(b).coordData());
+                assertEquals(expected.get(b).colorData(), actual.get(b).colorData());
+                assertEquals(expected.get(b).boxData(), actual.get(b).boxData());
+            }
+        }
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        Path file = dir.resolve("scene.rscn");
+        SceneFile.save(file, PARAMS, scenes());
+        byte[] data = Files.readAllBytes(file);
+        Path truncated = dir.resolve("truncated.rscn");
+        for (int length : new int[]{0, 10, 95, 110, data.length / 2, data.length - 1}) {
+            Files.write(truncated, Arrays.copyOf(data, length));
+            assertThrows(IOException.class, () -> SceneFile.load(truncated), "length " + length);
+        }
+    }
+
+    @Test
+    void hugeCountsAreRejectedBeforeAllocation() throws IOException {
+        Path file = dir.resolve("scene.rscn");
+        SceneFile.save(file, PARAMS, scenes());
+        // количество сцен идет сразу за заголовком и именем распределения
+        int sceneCountOffset = 4 + 4 + 6 * 4 + 6 * 8 + 8 + 4
+                + PARAMS.getDistribution().getBytes(StandardCharsets.UTF_8).length;
+        overwrite(file, sceneCountOffset, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> SceneFile.load(file));
+
+        overwrite(file, sceneCountOffset, 1);
+        overwrite(file, sceneCountOffset + 4, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> SceneFile.load(file));
+    }
+
+    /** @return две сцены: сгенерированная и ее часть */
+    private static List<ShapeStore> scenes() {
+        ShapeStore scene = new RandomShapeGenerator().generateScene(PARAMS);
+        ShapeStore part = new RandomShapeGenerator().generateScene(PARAMS.withSeed(8));
+        return List.of(scene, part);
+    }
+
+    private static void overwrite(Path file, long offset, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).flip();
+            channel.write(bytes, offset);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.shapes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Размер индекса в вытянутых областях.
+ */
+class SpatialIndexTest {
+
+    @Test
+    void cellCountIsBoundedInElongatedAreas() {
+        double[][] sizes = {{1e10, 1}, {1, 1e10}, {1e9, 1}, {1.5 * 64, 64.0 * SpatialIndex.MAX_CELLS / 1.5}};
+        for (double[] size : sizes) {
+            ShapeBuffer buffer = new ShapeBuffer(ShapeKind.CIRCLE, 1);
+            int i = buffer.add(0xFF000000);
+            buffer.set(i, 0, 10);
+            buffer.set(i, 1, 0.5f);
+            buffer.set(i, 2, 0.25f);
+            buffer.computeBounds(0, 1);
+
+            SpatialIndex index = SpatialIndex.build(Collections.singletonList(buffer),
+                    0, size[0], 0, size[1], 0);
+            // смещения ячеек — основная часть индекса, 4 байта на ячейку
+            long limit = 4L * (SpatialIndex.MAX_CELLS + 16);
+            assertTrue(index.heapBytes() <= limit,
+                    size[0] + "x" + size[1] + ": index takes " + index.heapBytes() + " bytes");
+            assertArrayEquals(new int[]{0}, index.hitTest(10.25, 0.5, 0.1));
+        }
+    }
+}